@@ -0,0 +1,74 @@
+package com.learnkafka.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+
+// Consumer side of the wire format comparison -- record value bytes to the LibraryEvent entity
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+	private static final String TOPIC = "library-events";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final LibraryEventDeserializer libraryEventDeserializer = new LibraryEventDeserializer(objectMapper);
+
+	private byte[] jsonPayload;
+
+	private byte[] binaryPayload;
+
+	private RecordHeaders jsonHeaders;
+
+	private RecordHeaders binaryHeaders;
+
+	@Setup
+	public void setUp() throws Exception {
+		var libraryEvent = LibraryEvent.builder().libraryEventId(123).libraryEventType(LibraryEventType.UPDATE)
+				.book(Book.builder().bookId(456).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build())
+				.build();
+		jsonPayload = objectMapper.writeValueAsBytes(libraryEvent);
+		binaryPayload = LibraryEventBinaryFormat.encode(libraryEvent);
+		jsonHeaders = new RecordHeaders();
+		binaryHeaders = new RecordHeaders();
+		binaryHeaders.add(LibraryEventBinaryFormat.VALUE_FORMAT_HEADER,
+				LibraryEventBinaryFormat.BINARY.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// previous path: StringDeserializer + objectMapper.readValue(String)
+	@Benchmark
+	public LibraryEvent jsonViaString() throws Exception {
+		return objectMapper.readValue(new String(jsonPayload, StandardCharsets.UTF_8), LibraryEvent.class);
+	}
+
+	@Benchmark
+	public LibraryEvent json() {
+		return libraryEventDeserializer.deserialize(TOPIC, jsonHeaders, jsonPayload);
+	}
+
+	@Benchmark
+	public LibraryEvent binary() {
+		return libraryEventDeserializer.deserialize(TOPIC, binaryHeaders, binaryPayload);
+	}
+}
@@ -0,0 +1,153 @@
+package com.learnkafka.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.springframework.data.domain.Pageable;
+
+import com.learnkafka.domain.LibraryEventView;
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+// Map backed LibraryEventsRepository, so the benchmarks measure the service and not the DB
+public class InMemoryLibraryEventsRepository implements LibraryEventsRepository {
+
+	private final Map<Integer, LibraryEvent> libraryEvents = new ConcurrentHashMap<>();
+
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	@Override
+	public <S extends LibraryEvent> S save(S entity) {
+		if (entity.getLibraryEventId() == null) {
+			entity.setLibraryEventId(sequence.incrementAndGet());
+		}
+		libraryEvents.put(entity.getLibraryEventId(), entity);
+		return entity;
+	}
+
+	@Override
+	public <S extends LibraryEvent> Iterable<S> saveAll(Iterable<S> entities) {
+		List<S> saved = new ArrayList<>();
+		entities.forEach(entity -> saved.add(save(entity)));
+		return saved;
+	}
+
+	@Override
+	public Optional<LibraryEvent> findById(Integer id) {
+		return Optional.ofNullable(libraryEvents.get(id));
+	}
+
+	@Override
+	public boolean existsById(Integer id) {
+		return libraryEvents.containsKey(id);
+	}
+
+	@Override
+	public Iterable<LibraryEvent> findAll() {
+		return new ArrayList<>(libraryEvents.values());
+	}
+
+	@Override
+	public Iterable<LibraryEvent> findAllById(Iterable<Integer> ids) {
+		List<LibraryEvent> found = new ArrayList<>();
+		ids.forEach(id -> findById(id).ifPresent(found::add));
+		return found;
+	}
+
+	@Override
+	public long count() {
+		return libraryEvents.size();
+	}
+
+	@Override
+	public void deleteById(Integer id) {
+		libraryEvents.remove(id);
+	}
+
+	@Override
+	public void delete(LibraryEvent entity) {
+		libraryEvents.remove(entity.getLibraryEventId());
+	}
+
+	@Override
+	public void deleteAllById(Iterable<? extends Integer> ids) {
+		ids.forEach(libraryEvents::remove);
+	}
+
+	@Override
+	public void deleteAll(Iterable<? extends LibraryEvent> entities) {
+		entities.forEach(this::delete);
+	}
+
+	@Override
+	public void deleteAll() {
+		libraryEvents.clear();
+	}
+
+	@Override
+	public List<Integer> findRecentLibraryEventIds(Pageable pageable) {
+		return libraryEvents.keySet().stream().sorted((a, b) -> b - a).limit(pageable.getPageSize()).toList();
+	}
+
+	@Override
+	public List<Integer> findExistingIds(Collection<Integer> ids) {
+		return ids.stream().filter(libraryEvents::containsKey).toList();
+	}
+
+	@Override
+	public Optional<LibraryEventView> findViewById(Integer libraryEventId) {
+		return findById(libraryEventId).map(InMemoryLibraryEventsRepository::view);
+	}
+
+	@Override
+	public List<LibraryEventView> findPageAfter(Integer afterId, Pageable pageable) {
+		return page(libraryEvent -> true, afterId, pageable);
+	}
+
+	@Override
+	public List<LibraryEventView> findPageByBookAuthorAfter(String bookAuthor, Integer afterId, Pageable pageable) {
+		return page(libraryEvent -> libraryEvent.getBook() != null
+				&& bookAuthor.equals(libraryEvent.getBook().getBookAuthor()), afterId, pageable);
+	}
+
+	@Override
+	public List<LibraryEventView> findPageByBookNamePrefixAfter(String bookNamePrefix, Integer afterId,
+			Pageable pageable) {
+		return page(libraryEvent -> libraryEvent.getBook() != null && libraryEvent.getBook().getBookName() != null
+				&& libraryEvent.getBook().getBookName().startsWith(bookNamePrefix), afterId, pageable);
+	}
+
+	@Override
+	public int updateBook(Integer bookId, String bookName, String bookAuthor, Integer libraryEventId) {
+		var libraryEvent = libraryEvents.get(libraryEventId);
+		if (libraryEvent == null) {
+			return 0;
+		}
+		libraryEvent.setBook(Book.builder().bookId(bookId).bookName(bookName).bookAuthor(bookAuthor).build());
+		return 1;
+	}
+
+	private List<LibraryEventView> page(Predicate<LibraryEvent> filter, Integer afterId, Pageable pageable) {
+		return libraryEvents.values().stream()
+				.filter(libraryEvent -> libraryEvent.getLibraryEventId() > afterId)
+				.filter(filter)
+				.sorted(Comparator.comparing(LibraryEvent::getLibraryEventId))
+				.limit(pageable.getPageSize())
+				.map(InMemoryLibraryEventsRepository::view)
+				.toList();
+	}
+
+	private static LibraryEventView view(LibraryEvent libraryEvent) {
+		var book = libraryEvent.getBook() == null ? new Book() : libraryEvent.getBook();
+		return new LibraryEventView(libraryEvent.getLibraryEventId(), libraryEvent.getLibraryEventType(),
+				book.getBookId(), book.getBookName(), book.getBookAuthor());
+	}
+}
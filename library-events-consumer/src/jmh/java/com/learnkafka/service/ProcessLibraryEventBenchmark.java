@@ -0,0 +1,102 @@
+package com.learnkafka.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.cache.LibraryEventIdCache;
+import com.learnkafka.cache.LibraryEventViewCache;
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.flow.PersistFlowController;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.serialization.LibraryEventDeserializer;
+import com.learnkafka.store.LibraryEventStateStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// processLibraryEvent end to end (deserialize, validate, persist) against InMemoryLibraryEventsRepository
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessLibraryEventBenchmark {
+
+	@Param({ "NEW", "UPDATE" })
+	public LibraryEventType libraryEventType;
+
+	private LibraryEventsServiceImpl libraryEventsService;
+
+	private InMemoryLibraryEventsRepository libraryEventsRepository;
+
+	private LibraryEvent existing;
+
+	private ConsumerRecord<Integer, byte[]> consumerRecord;
+
+	@Setup
+	public void setUp() throws Exception {
+		var objectMapper = new ObjectMapper();
+		libraryEventsRepository = new InMemoryLibraryEventsRepository();
+		var libraryEventIdCache = new LibraryEventIdCache(libraryEventsRepository, new SimpleMeterRegistry(), 100_000,
+				Duration.ofMinutes(30));
+
+		libraryEventsService = new LibraryEventsServiceImpl();
+		ReflectionTestUtils.setField(libraryEventsService, "libraryEventDeserializer",
+				new LibraryEventDeserializer(objectMapper));
+		ReflectionTestUtils.setField(libraryEventsService, "libraryEventsRepository", libraryEventsRepository);
+		ReflectionTestUtils.setField(libraryEventsService, "libraryEventIdCache", libraryEventIdCache);
+		ReflectionTestUtils.setField(libraryEventsService, "libraryEventViewCache",
+				new LibraryEventViewCache(new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(10)));
+		var libraryEventsMetrics = new LibraryEventsMetrics(new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(libraryEventsService, "libraryEventsMetrics", libraryEventsMetrics);
+		// stateStore.enabled=false, UPDATE events are validated through LibraryEventIdCache
+		ReflectionTestUtils.setField(libraryEventsService, "libraryEventStateStore",
+				new LibraryEventStateStore(null, null, libraryEventsMetrics));
+		// flowControl.enabled=false
+		ReflectionTestUtils.setField(libraryEventsService, "persistFlowController",
+				new PersistFlowController(null, libraryEventsMetrics));
+		ReflectionTestUtils.setField(libraryEventsService, "upsertEnabled", true);
+
+		var book = Book.builder().bookId(456).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build();
+		existing = libraryEventsRepository
+				.save(LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).book(book).build());
+		libraryEventIdCache.add(existing.getLibraryEventId());
+
+		Integer libraryEventId = libraryEventType == LibraryEventType.UPDATE ? existing.getLibraryEventId() : null;
+		var json = "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"" + libraryEventType
+				+ "\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+		consumerRecord = new ConsumerRecord<>("library-events", 0, 0L, libraryEventId,
+				json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// NEW events pile up in the repository, start every iteration from the single existing event
+	@Setup(Level.Iteration)
+	public void resetRepository() {
+		libraryEventsRepository.deleteAll();
+		libraryEventsRepository.save(existing);
+	}
+
+	@Benchmark
+	public void processLibraryEvent() throws Exception {
+		libraryEventsService.processLibraryEvent(consumerRecord);
+	}
+}
@@ -0,0 +1,88 @@
+package com.learnkafka.cache;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded cache of libraryEventIds known to exist in the DB, so validating an UPDATE event
+ * does not need a findById round trip. Only positive entries are cached -- a miss still goes to the DB.
+ * Populated on NEW saves, on successful DB lookups and on startup with the most recent ids.
+ * Hit/miss counts are exposed as cache.gets{cache=libraryEventIds,result=hit|miss}.
+ */
+@Component
+public class LibraryEventIdCache {
+
+	private static final Logger log = LoggerFactory.getLogger(LibraryEventIdCache.class);
+
+	public static final String CACHE_NAME = "libraryEventIds";
+
+	private final Cache<Integer, Boolean> knownIds;
+
+	private final int maximumSize;
+
+	private final LibraryEventsRepository libraryEventsRepository;
+
+	public LibraryEventIdCache(LibraryEventsRepository libraryEventsRepository, MeterRegistry meterRegistry,
+			@Value("${idCache.maximumSize:100000}") int maximumSize,
+			@Value("${idCache.ttl:30m}") Duration ttl) {
+		this.libraryEventsRepository = libraryEventsRepository;
+		this.maximumSize = maximumSize;
+		// size based eviction drops the least recently/frequently used ids, ttl bounds how stale an entry can get
+		this.knownIds = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, knownIds, CACHE_NAME);
+	}
+
+	public boolean contains(Integer libraryEventId) {
+		return libraryEventId != null && knownIds.getIfPresent(libraryEventId) != null;
+	}
+
+	public void add(Integer libraryEventId) {
+		if (libraryEventId == null) {
+			return;
+		}
+		// inside a DB transaction (listener.mode=eos) the id is only known once the row is committed
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					knownIds.put(libraryEventId, Boolean.TRUE);
+				}
+			});
+			return;
+		}
+		knownIds.put(libraryEventId, Boolean.TRUE);
+	}
+
+	public void invalidate(Integer libraryEventId) {
+		if (libraryEventId != null) {
+			knownIds.invalidate(libraryEventId);
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmUp() {
+		var recentIds = libraryEventsRepository.findRecentLibraryEventIds(PageRequest.of(0, maximumSize));
+		recentIds.forEach(this::add);
+		log.info("LibraryEventIdCache warmed up with {} ids", recentIds.size());
+	}
+}
@@ -0,0 +1,63 @@
+package com.learnkafka.cache;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learnkafka.domain.LibraryEventView;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded near-cache of the library events served by GET /v1/libraryevents/{id}.
+ * LibraryEventsServiceImpl invalidates an entry whenever it writes the event -- after the commit when the write
+ * runs in a DB transaction -- so a read after the write loads the new state. A load racing with the write is
+ * safe too, the invalidation waits for the load of the same id to finish and then drops what it loaded.
+ * Hit/miss counts are exposed as cache.gets{cache=libraryEventViews,result=hit|miss}.
+ */
+@Component
+public class LibraryEventViewCache {
+
+	public static final String CACHE_NAME = "libraryEventViews";
+
+	private final Cache<Integer, LibraryEventView> views;
+
+	public LibraryEventViewCache(MeterRegistry meterRegistry,
+			@Value("${readCache.maximumSize:10000}") int maximumSize,
+			@Value("${readCache.ttl:10m}") Duration ttl) {
+		this.views = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, views, CACHE_NAME);
+	}
+
+	// a loader returning null is not cached, an unknown id is looked up again next time
+	public LibraryEventView get(Integer libraryEventId, Function<Integer, LibraryEventView> loader) {
+		return views.get(libraryEventId, loader);
+	}
+
+	public void invalidate(Integer libraryEventId) {
+		if (libraryEventId == null) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					views.invalidate(libraryEventId);
+				}
+			});
+			return;
+		}
+		views.invalidate(libraryEventId);
+	}
+}
@@ -0,0 +1,148 @@
+package com.learnkafka.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+/**
+ * Declares the main, RETRY, DLT and (stateStore.enabled) changelog topics. The layout comes from topics.layout.*,
+ * topics.layout.<main|retry|dlt|changelog>.* overrides a setting for a single topic.
+ * KafkaAdmin creates missing topics at startup and adds partitions to existing topics that have fewer than
+ * configured (with spring.kafka.admin.modify-topic-configs the topic configs are updated as well).
+ * Partitions can only grow, so once the application is up the actual partition counts are compared with the
+ * configured ones and any drift left is logged.
+ *
+ * The listener container concurrency is derived from the partition count of the main topic as described by the
+ * broker (the configured count when it does not exist yet), see listenerConcurrency().
+ */
+@Configuration
+public class AutoCreateConfig {
+
+	private static final Logger log = LoggerFactory.getLogger(AutoCreateConfig.class);
+
+	@Value("${spring.kafka.topic:library-events}")
+	String topic;
+
+	@Value("${topics.retry:library-events.RETRY}")
+	String retryTopic;
+
+	@Value("${topics.dlt:library-events.DLT}")
+	String deadLetterTopic;
+
+	@Value("${topics.changelog:library-events.changelog}")
+	String changelogTopic;
+
+	// 0 -- one listener thread per partition of the main topic, resolved by listenerConcurrency()
+	@Value("${listener.concurrency:0}")
+	int concurrency;
+
+	@Autowired
+	Environment environment;
+
+	@Autowired
+	KafkaAdmin kafkaAdmin;
+
+	@Bean
+	public NewTopic libraryEvents() {
+		return newTopic(topic, "main");
+	}
+
+	@Bean
+	public NewTopic libraryEventsRetry() {
+		return newTopic(retryTopic, "retry");
+	}
+
+	@Bean
+	public NewTopic libraryEventsDeadLetter() {
+		return newTopic(deadLetterTopic, "dlt");
+	}
+
+	// LibraryEventStateStore changelog, compacted down to the latest record per libraryEventId
+	@Bean
+	@ConditionalOnProperty(name = "stateStore.enabled", havingValue = "true")
+	public NewTopic libraryEventsChangelog() {
+		var changelog = newTopic(changelogTopic, "changelog");
+		changelog.configs().put(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT);
+		changelog.configs().remove(TopicConfig.RETENTION_MS_CONFIG);
+		return changelog;
+	}
+
+	// more threads than partitions would sit idle, fewer means a thread serves several partitions.
+	// The container factories are built before KafkaAdmin creates or grows the topics -- an existing main topic is
+	// described and ends up with at least the configured partitions, a missing one is created with them
+	public synchronized int listenerConcurrency() {
+		if (concurrency <= 0) {
+			int configured = setting("main", "partitions", Integer.class, 3);
+			concurrency = Math.max(configured, describedPartitions(configured));
+			log.info("Listener concurrency {} for the partitions of topic {}", concurrency, topic);
+		}
+		return concurrency;
+	}
+
+	private int describedPartitions(int configured) {
+		try {
+			return kafkaAdmin.describeTopics(topic).get(topic).partitions().size();
+		} catch (Exception e) {
+			log.info("Could not describe topic {}, using the configured {} partitions : {}", topic, configured,
+					e.getMessage());
+			return configured;
+		}
+	}
+
+	// layout of a kind of topic (main, retry, dlt) -- the retry tier topics of RetryTopicsConfig use the retry one
+	public int partitions(String kind) {
+		return setting(kind, "partitions", Integer.class, 3);
+	}
+
+	public short replicas(String kind) {
+		return setting(kind, "replicas", Integer.class, 1).shortValue();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void checkPartitionDrift() {
+		try {
+			kafkaAdmin.describeTopics(topic, retryTopic, deadLetterTopic).forEach((name, description) -> {
+				int configured = setting(kind(name), "partitions", Integer.class, 3);
+				int actual = description.partitions().size();
+				if (actual != configured) {
+					log.warn("Topic {} has {} partitions but {} are configured -- partitions can only be added",
+							name, actual, configured);
+				}
+			});
+		} catch (Exception e) {
+			log.warn("Could not check the partition count of the topics : {}", e.getMessage());
+		}
+	}
+
+	private String kind(String name) {
+		return name.equals(retryTopic) ? "retry" : name.equals(deadLetterTopic) ? "dlt" : "main";
+	}
+
+	private NewTopic newTopic(String name, String kind) {
+		return TopicBuilder
+				.name(name)
+				.partitions(setting(kind, "partitions", Integer.class, 3))
+				.replicas(setting(kind, "replicas", Integer.class, 1))
+				.config(TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, setting(kind, "min-insync-replicas", String.class, "1"))
+				.config(TopicConfig.COMPRESSION_TYPE_CONFIG, setting(kind, "compression-type", String.class, "producer"))
+				.config(TopicConfig.SEGMENT_BYTES_CONFIG, setting(kind, "segment-bytes", String.class, "1073741824"))
+				.config(TopicConfig.RETENTION_MS_CONFIG, setting(kind, "retention-ms", String.class, "604800000"))
+				.build();
+	}
+
+	private <T> T setting(String kind, String key, Class<T> type, T defaultValue) {
+		return environment.getProperty("topics.layout." + kind + "." + key, type,
+				environment.getProperty("topics.layout." + key, type, defaultValue));
+	}
+}
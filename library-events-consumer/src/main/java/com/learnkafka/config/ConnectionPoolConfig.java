@@ -0,0 +1,64 @@
+package com.learnkafka.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * connectionPool.sizeToListeners -- sizes the HikariCP pool after the threads that hold a connection at the same
+ * time: one per listener thread (keyed.lanes in keyed mode, the listener thread only hands records over there),
+ * retryScheduler.workers, the FailureJournal writer and connectionPool.headroom for the read API and replays.
+ * A bigger pool only adds contention on the DB, a smaller one makes listener threads wait for a connection.
+ * The pool is fixed size (minimum-idle = maximum-pool-size), there is no burst to shrink after.
+ * An explicit spring.datasource.hikari.maximum-pool-size wins.
+ */
+@Configuration
+@ConditionalOnProperty(name = "connectionPool.sizeToListeners", havingValue = "true")
+public class ConnectionPoolConfig {
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionPoolConfig.class);
+
+	static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+	// static -- post processors are created before the regular beans
+	@Bean
+	static BeanPostProcessor connectionPoolSizer(Environment environment) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource dataSource && !environment.containsProperty(MAXIMUM_POOL_SIZE)) {
+					int poolSize = poolSize(environment);
+					dataSource.setMaximumPoolSize(poolSize);
+					dataSource.setMinimumIdle(poolSize);
+					log.info("Connection pool {} sized to {} connections", dataSource.getPoolName(), poolSize);
+				}
+				return bean;
+			}
+		};
+	}
+
+	static int poolSize(Environment environment) {
+		int dbThreads = "keyed".equals(environment.getProperty("listener.mode"))
+				? environment.getProperty("keyed.lanes", Integer.class, 8)
+				: listenerConcurrency(environment);
+		int retryWorkers = environment.getProperty("retryScheduler.workers", Integer.class, 4);
+		int failureJournalWriter = 1;
+		return dbThreads + retryWorkers + failureJournalWriter
+				+ environment.getProperty("connectionPool.headroom", Integer.class, 2);
+	}
+
+	// AutoCreateConfig.listenerConcurrency() is not available yet when the pool is created, this takes the
+	// configured partition count -- a main topic that has grown beyond it needs connectionPool.headroom to match
+	private static int listenerConcurrency(Environment environment) {
+		int concurrency = environment.getProperty("listener.concurrency", Integer.class, 0);
+		return concurrency > 0 ? concurrency
+				: environment.getProperty("topics.layout.main.partitions", Integer.class,
+						environment.getProperty("topics.layout.partitions", Integer.class, 3));
+	}
+}
@@ -8,15 +8,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
@@ -42,6 +45,10 @@ public class LibraryEventsConsumerConfig {
     
     @Autowired
     FailureService failureService;
+
+    // listener concurrency follows the partition count of the main topic
+    @Autowired
+    AutoCreateConfig autoCreateConfig;
     
     /**
      * You can configure the DefaultErrorHandler and DefaultAfterRollbackProcessor with a record recoverer when the maximum number of failures is reached for a record. 
@@ -66,9 +73,10 @@ public class LibraryEventsConsumerConfig {
     
     // Reprocess the already consumed message again 
     ConsumerRecordRecoverer consumerRecordRecoverer = (consumerRecord, e) -> {
-    	var record = (ConsumerRecord<Integer, String>) consumerRecord;
+    	var record = (ConsumerRecord<Integer, byte[]>) consumerRecord;
     	log.info("======Inside ConsumerRecordRecoverer | Exception : {} ", e.getMessage(), e);
-    	if (e.getCause() instanceof RecoverableDataAccessException) {
+    	// most specific cause -- batch listener failures are wrapped once more in BatchListenerFailedException
+    	if (NestedExceptionUtils.getMostSpecificCause(e) instanceof RecoverableDataAccessException) {
     		// recovery logic
     		log.info("======Inside Recovery ");
     		failureService.saveFailedRecord(record, e, LibraryEventStatus.RETRY.name());
@@ -84,13 +92,51 @@ public class LibraryEventsConsumerConfig {
 			ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
 			ConsumerFactory<Object, Object> kafkaConsumerFactory) {
 		ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		// configurer also sets the listener task executor -- virtual threads when spring.threads.virtual.enabled=true
 		configurer.configure(factory, kafkaConsumerFactory);
-		factory.setConcurrency(3);
+		factory.setConcurrency(autoCreateConfig.listenerConcurrency());
+		// a pause (PersistFlowController) takes effect after the current record, the rest of the poll is
+		// handed to the listener after the resume
+		factory.getContainerProperties().setPauseImmediate(true);
 		// factory.getContainerProperties().setAckMode(AckMode.MANUAL);
 		factory.setCommonErrorHandler(errorHandlerWithPublishingRecoverer());
 		return factory;
 	}
 
+	// listener.mode=batch -- the whole poll is handed over to LibraryEventsBatchConsumer as a List<ConsumerRecord>
+	// The same error handler is used, when the listener throws BatchListenerFailedException the offsets
+	// before the failed index are committed and only the failed record goes through retry + consumerRecordRecoverer
+	@Bean
+	@ConditionalOnProperty(name = "listener.mode", havingValue = "batch")
+	ConcurrentKafkaListenerContainerFactory<?, ?> batchKafkaListenerContainerFactory(
+			ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+			ConsumerFactory<Object, Object> kafkaConsumerFactory) {
+		ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		configurer.configure(factory, kafkaConsumerFactory);
+		factory.setConcurrency(autoCreateConfig.listenerConcurrency());
+		factory.setBatchListener(true);
+		factory.setCommonErrorHandler(errorHandlerWithPublishingRecoverer());
+		return factory;
+	}
+
+	// listener.mode=keyed -- LibraryEventsKeyedConsumer processes records on key ordered lanes and acknowledges
+	// them from there. asyncAcks lets the acks arrive out of order, the container only commits the contiguous
+	// acknowledged offsets of each partition and pauses the consumer until the previous poll is fully acknowledged
+	@Bean
+	@ConditionalOnProperty(name = "listener.mode", havingValue = "keyed")
+	ConcurrentKafkaListenerContainerFactory<?, ?> keyedKafkaListenerContainerFactory(
+			ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+			ConsumerFactory<Object, Object> kafkaConsumerFactory) {
+		ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		configurer.configure(factory, kafkaConsumerFactory);
+		factory.setConcurrency(autoCreateConfig.listenerConcurrency());
+		factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+		factory.getContainerProperties().setAsyncAcks(true);
+		// failures are handled on the lanes, see LibraryEventsKeyedConsumer
+		factory.setCommonErrorHandler(errorHandlerWithPublishingRecoverer());
+		return factory;
+	}
+
 	
 	/**
 	 * It's used to configure retry policies where each subsequent retry attempt happens after a progressively increasing delay
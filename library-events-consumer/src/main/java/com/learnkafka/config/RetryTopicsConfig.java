@@ -0,0 +1,81 @@
+package com.learnkafka.config;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+
+/**
+ * retryTopics.enabled=true -- non blocking retries for the main topic listener (listener.mode=record).
+ * Instead of the blocking FixedBackOff of the error handler, a record failing with a RecoverableDataAccessException
+ * is forwarded to the next retry tier topic and the listener moves on with the next record of the partition:
+ *
+ * library-events -> library-events-retry-5000 -> library-events-retry-30000 -> library-events-retry-180000 -> library-events.DLT
+ *
+ * (initialDelay 5s, multiplier 6, maxDelay 5m, attempts 4 -- the delay is part of the topic name).
+ * A tier consumer does not sleep until a record is due, the KafkaConsumerBackoffManager pauses the tier partition
+ * and resumes it when the record is due, the other partitions keep going.
+ * Other exceptions are not retried and go to the DLT right away, LibraryEventsDltHandler hands DLT records
+ * to FailureService like the blocking error handler's recoverer does.
+ *
+ * The tier topics are created with the topics.layout.retry.* partitions and replicas.
+ */
+@Configuration
+@ConditionalOnProperty(name = "retryTopics.enabled", havingValue = "true")
+public class RetryTopicsConfig {
+
+	private static final Logger log = LoggerFactory.getLogger(RetryTopicsConfig.class);
+
+	@Value("${spring.kafka.topic:library-events}")
+	String topic;
+
+	@Value("${listener.mode:record}")
+	String listenerMode;
+
+	@Value("${retryTopics.initialDelay:5s}")
+	Duration initialDelay;
+
+	@Value("${retryTopics.multiplier:6}")
+	double multiplier;
+
+	@Value("${retryTopics.maxDelay:5m}")
+	Duration maxDelay;
+
+	// first delivery included -- 4 is three retry tiers
+	@Value("${retryTopics.attempts:4}")
+	int attempts;
+
+	@Autowired
+	AutoCreateConfig autoCreateConfig;
+
+	@Bean
+	RetryTopicConfiguration libraryEventsRetryTopicConfiguration(KafkaTemplate<?, ?> kafkaTemplate) {
+		// retry topics need one record per listener call and the container's own acks
+		if (!"record".equals(listenerMode)) {
+			throw new IllegalStateException("retryTopics.enabled needs listener.mode=record, not " + listenerMode);
+		}
+		log.info("Non blocking retries for {} : {} attempts, delays from {} x{} up to {}", topic, attempts,
+				initialDelay, multiplier, maxDelay);
+		return RetryTopicConfigurationBuilder.newInstance()
+				.includeTopic(topic)
+				.maxAttempts(attempts)
+				.exponentialBackoff(initialDelay.toMillis(), multiplier, maxDelay.toMillis())
+				.retryOn(RecoverableDataAccessException.class)
+				.traversingCauses()
+				.retryTopicSuffix("-retry")
+				// same dead letter topic as the blocking error handler
+				.dltSuffix(".DLT")
+				.autoCreateTopicsWith(autoCreateConfig.partitions("retry"), autoCreateConfig.replicas("retry"))
+				.dltHandlerMethod("libraryEventsDltHandler", "handleDlt")
+				.create(kafkaTemplate);
+	}
+}
@@ -0,0 +1,48 @@
+package com.learnkafka.consumer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of single threaded lanes. A record key always maps to the same lane, so the records of one key
+ * run in the order they were submitted while different keys run in parallel.
+ * Records without a key (NEW events) have no ordering requirement and are spread round robin.
+ */
+public class KeyOrderedExecutor {
+
+	private final ExecutorService[] lanes;
+
+	private final AtomicInteger roundRobin = new AtomicInteger();
+
+	public KeyOrderedExecutor(int laneCount, String threadNamePrefix) {
+		this.lanes = new ExecutorService[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			var threadName = threadNamePrefix + i;
+			lanes[i] = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, threadName));
+		}
+	}
+
+	public void execute(Object key, Runnable task) {
+		lanes[laneFor(key)].execute(task);
+	}
+
+	int laneFor(Object key) {
+		if (key == null) {
+			return Math.floorMod(roundRobin.getAndIncrement(), lanes.length);
+		}
+		// spread the hash, consecutive Integer keys would otherwise map to consecutive lanes only by accident
+		int hash = key.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+	}
+
+	public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		for (var lane : lanes) {
+			lane.shutdown();
+		}
+		for (var lane : lanes) {
+			lane.awaitTermination(timeout, unit);
+		}
+	}
+}
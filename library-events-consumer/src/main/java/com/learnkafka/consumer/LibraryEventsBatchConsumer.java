@@ -0,0 +1,37 @@
+package com.learnkafka.consumer;
+
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.service.LibraryEventsServiceImpl;
+
+@Component
+@ConditionalOnProperty(name = "listener.mode", havingValue = "batch")
+// replaces LibraryEventsConsumer when listener.mode=batch
+public class LibraryEventsBatchConsumer {
+
+	private static final Logger logger = LoggerFactory.getLogger(LibraryEventsBatchConsumer.class);
+
+	@Autowired
+	private LibraryEventsServiceImpl libraryEventsService;
+
+	@Autowired
+	private LibraryEventsMetrics libraryEventsMetrics;
+
+	// All the records returned by one poll are delivered in a single call
+	@KafkaListener(topics = {"library-events"}, groupId = "${spring.kafka.consumer.group-id}"
+	, containerFactory = "batchKafkaListenerContainerFactory")
+	public void onMessage(List<ConsumerRecord<Integer, byte[]>> consumerRecords) {
+		logger.debug("Consumer Records batch size : {}", consumerRecords.size());
+		consumerRecords.forEach(libraryEventsMetrics::recordLag);
+		libraryEventsService.processLibraryEvents(consumerRecords);
+	}
+}
@@ -4,12 +4,16 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import com.learnkafka.metrics.LibraryEventsMetrics;
 import com.learnkafka.service.LibraryEventsServiceImpl;
 
 @Component
+@ConditionalOnProperty(name = "listener.mode", havingValue = "record", matchIfMissing = true)
 //dont forgot to comment other consumer
 public class LibraryEventsConsumer {
 	
@@ -18,13 +22,32 @@ public class LibraryEventsConsumer {
 	@Autowired
 	private LibraryEventsServiceImpl libraryEventsService;
 	
+	@Autowired
+	private LibraryEventsMetrics libraryEventsMetrics;
+
+	@Value("${spring.kafka.topic:library-events}")
+	private String topic;
+	
 	// Spring boot auto configuration helps here to configure consumer
 	// @@KafkaListener internally uses KafkaListenerContainerFactory & ConsumerFactory beans and they are responsible 
 	// for reading the message from consumer
 	@KafkaListener(topics = {"library-events"}, groupId = "${spring.kafka.consumer.group-id}")
-	public void onMessage(ConsumerRecord<Integer, String> consumerRecord) throws Exception {
-		logger.info("Consumer Record : {}",consumerRecord);
-		libraryEventsService.processLibraryEvent(consumerRecord);
+	public void onMessage(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception {
+		// debug only -- formatting the whole record on every message is not free, use the metrics instead
+		logger.debug("Consumer Record : {}",consumerRecord);
+		libraryEventsMetrics.recordLag(consumerRecord);
+		if (topic.equals(consumerRecord.topic())) {
+			libraryEventsService.processLibraryEvent(consumerRecord);
+			return;
+		}
+		// retryTopics.enabled -- the same listener serves the retry tier topics, see RetryTopicsConfig
+		try {
+			libraryEventsService.processLibraryEvent(consumerRecord);
+			libraryEventsMetrics.retryTierRecord(consumerRecord.topic(), "success");
+		} catch (Exception e) {
+			libraryEventsMetrics.retryTierRecord(consumerRecord.topic(), "failure");
+			throw e;
+		}
 	}
 
 }
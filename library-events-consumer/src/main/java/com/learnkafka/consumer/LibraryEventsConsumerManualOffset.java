@@ -10,13 +10,13 @@ import org.springframework.stereotype.Component;
 
 //@Component
 // dont forgot to comment out LibraryEventsConsumer
-public class LibraryEventsConsumerManualOffset implements AcknowledgingMessageListener<Integer, String> {
+public class LibraryEventsConsumerManualOffset implements AcknowledgingMessageListener<Integer, byte[]> {
 	
 	private static final Logger logger = LoggerFactory.getLogger(LibraryEventsConsumerManualOffset.class);
 
 	@Override
 	@KafkaListener(topics = {"library-events"})
-	public void onMessage(ConsumerRecord<Integer, String> consumerRecord, Acknowledgment acknowledgment) {
+	public void onMessage(ConsumerRecord<Integer, byte[]> consumerRecord, Acknowledgment acknowledgment) {
 		logger.info("Consumer Record: {} | {} ",consumerRecord, "Manually Acknowleding msg" );
 		acknowledgment.acknowledge();
 	}
@@ -0,0 +1,53 @@
+package com.learnkafka.consumer;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.service.FailureService;
+
+// retryTopics.enabled -- end of the retry tier chain, see RetryTopicsConfig
+@Component("libraryEventsDltHandler")
+@ConditionalOnProperty(name = "retryTopics.enabled", havingValue = "true")
+public class LibraryEventsDltHandler {
+
+	private static final Logger logger = LoggerFactory.getLogger(LibraryEventsDltHandler.class);
+
+	private final FailureService failureService;
+
+	private final LibraryEventsMetrics libraryEventsMetrics;
+
+	public LibraryEventsDltHandler(FailureService failureService, LibraryEventsMetrics libraryEventsMetrics) {
+		this.failureService = failureService;
+		this.libraryEventsMetrics = libraryEventsMetrics;
+	}
+
+	// same outcome as the blocking recoverer -- retries exhausted on a DB error stay RETRY for the RetryScheduler
+	public void handleDlt(ConsumerRecord<Integer, byte[]> consumerRecord) {
+		var exceptionMessage = header(consumerRecord, KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+		// the listener exception (ListenerExecutionFailedException) usually wraps the real one
+		var recoverable = RecoverableDataAccessException.class.getName()
+				.equals(header(consumerRecord, KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN))
+				|| RecoverableDataAccessException.class.getName()
+						.equals(header(consumerRecord, KafkaHeaders.DLT_EXCEPTION_FQCN));
+		logger.info("Dead letter {}-{}@{} : {} ", consumerRecord.topic(), consumerRecord.partition(),
+				consumerRecord.offset(), exceptionMessage);
+		libraryEventsMetrics.retryTierRecord(consumerRecord.topic(), "dead-letter");
+		failureService.saveFailedRecord(consumerRecord, new ListenerExecutionFailedException(exceptionMessage),
+				recoverable ? LibraryEventStatus.RETRY.name() : LibraryEventStatus.DEAD.name());
+	}
+
+	private static String header(ConsumerRecord<?, ?> consumerRecord, String name) {
+		var header = consumerRecord.headers().lastHeader(name);
+		return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,53 @@
+package com.learnkafka.consumer;
+
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.service.ConsumedOffsetService;
+import com.learnkafka.service.LibraryEventsServiceImpl;
+
+@Component
+@ConditionalOnProperty(name = "listener.mode", havingValue = "eos")
+// replaces LibraryEventsConsumer when listener.mode=eos
+// Every record is persisted together with its offset (ConsumedOffset) in one DB transaction,
+// so a crash between the DB write and the kafka offset commit no longer reprocesses the event
+public class LibraryEventsExactlyOnceConsumer extends AbstractConsumerSeekAware {
+
+	private static final Logger logger = LoggerFactory.getLogger(LibraryEventsExactlyOnceConsumer.class);
+
+	@Autowired
+	private LibraryEventsServiceImpl libraryEventsService;
+
+	@Autowired
+	private ConsumedOffsetService consumedOffsetService;
+
+	@Autowired
+	private LibraryEventsMetrics libraryEventsMetrics;
+
+	// resume from the offsets stored in the DB, they are never behind what was actually persisted
+	@Override
+	public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+		super.onPartitionsAssigned(assignments, callback);
+		consumedOffsetService.nextOffsets(assignments.keySet()).forEach((topicPartition, nextOffset) -> {
+			logger.info("Seeking {} to the stored offset {}", topicPartition, nextOffset);
+			callback.seek(topicPartition.topic(), topicPartition.partition(), nextOffset);
+		});
+	}
+
+	@KafkaListener(topics = {"library-events"}, groupId = "${spring.kafka.consumer.group-id}")
+	public void onMessage(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception {
+		logger.debug("Consumer Record : {}", consumerRecord);
+		libraryEventsMetrics.recordLag(consumerRecord);
+		libraryEventsService.processLibraryEventExactlyOnce(consumerRecord);
+	}
+}
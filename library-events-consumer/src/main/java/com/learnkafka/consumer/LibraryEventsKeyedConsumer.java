@@ -0,0 +1,100 @@
+package com.learnkafka.consumer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.service.FailureService;
+import com.learnkafka.service.LibraryEventsServiceImpl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * listener.mode=keyed -- replaces LibraryEventsConsumer.
+ * The listener thread only hands the record over to a KeyOrderedExecutor lane picked by the record key
+ * (libraryEventId), so events of the same library event stay in order while different ones are processed
+ * in parallel -- more parallelism than the partition count, without repartitioning.
+ *
+ * Every record is acknowledged from its lane once done. The container runs with AckMode.MANUAL and asyncAcks,
+ * i.e. out of order acks are held back and only the contiguous acknowledged offsets of a partition are committed
+ * (the completed watermark), and the consumer is paused until the records of the previous poll are all acknowledged.
+ *
+ * The container error handler never sees a failure that happens on a lane, so the lane hands a failed record
+ * straight to FailureService -- RETRY for a RecoverableDataAccessException, RetryScheduler does the backoff off the
+ * lane, DEAD otherwise. A lane never sleeps, one failing key must not hold up the other keys of its lane.
+ * The record is acknowledged whatever happens, also when FailureService fails too: an unacknowledged record would
+ * hold the watermark of its partition back, and with it every commit and (asyncAcks) the next poll, forever.
+ */
+@Component
+@ConditionalOnProperty(name = "listener.mode", havingValue = "keyed")
+public class LibraryEventsKeyedConsumer {
+
+	private static final Logger logger = LoggerFactory.getLogger(LibraryEventsKeyedConsumer.class);
+
+	@Autowired
+	private LibraryEventsServiceImpl libraryEventsService;
+
+	@Autowired
+	private FailureService failureService;
+
+	@Autowired
+	private LibraryEventsMetrics libraryEventsMetrics;
+
+	@Value("${keyed.lanes:8}")
+	private int lanes;
+
+	private KeyOrderedExecutor keyOrderedExecutor;
+
+	@PostConstruct
+	void startLanes() {
+		keyOrderedExecutor = new KeyOrderedExecutor(lanes, "library-events-lane-");
+	}
+
+	@PreDestroy
+	void stopLanes() throws InterruptedException {
+		keyOrderedExecutor.shutdown(30, TimeUnit.SECONDS);
+	}
+
+	@KafkaListener(topics = {"library-events"}, groupId = "${spring.kafka.consumer.group-id}"
+	, containerFactory = "keyedKafkaListenerContainerFactory")
+	public void onMessage(ConsumerRecord<Integer, byte[]> consumerRecord, Acknowledgment acknowledgment) {
+		logger.debug("Consumer Record : {}", consumerRecord);
+		libraryEventsMetrics.recordLag(consumerRecord);
+		keyOrderedExecutor.execute(consumerRecord.key(), () -> {
+			try {
+				process(consumerRecord);
+			} catch (RuntimeException e) {
+				// FailureService failed as well, nothing left to hand the record to
+				logger.error("Record {}-{}@{} dropped, FailureService failed", consumerRecord.topic(),
+						consumerRecord.partition(), consumerRecord.offset(), e);
+			} finally {
+				acknowledgment.acknowledge();
+			}
+		});
+	}
+
+	private void process(ConsumerRecord<Integer, byte[]> consumerRecord) {
+		try {
+			libraryEventsService.processLibraryEvent(consumerRecord);
+		} catch (Exception e) {
+			boolean recoverable = NestedExceptionUtils.getMostSpecificCause(e) instanceof RecoverableDataAccessException;
+			logger.info("Handing record {}-{}@{} to FailureService | Exception : {} ", consumerRecord.topic(),
+					consumerRecord.partition(), consumerRecord.offset(), e.getMessage());
+			failureService.saveFailedRecord(consumerRecord, e,
+					recoverable ? LibraryEventStatus.RETRY.name() : LibraryEventStatus.DEAD.name());
+		}
+	}
+}
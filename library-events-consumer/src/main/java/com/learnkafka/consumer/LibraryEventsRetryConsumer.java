@@ -20,8 +20,8 @@ public class LibraryEventsRetryConsumer {
 	@KafkaListener(topics = {"${topics.retry}"}
 	, autoStartup = "${retryListener.startup:false}"
 	, groupId = "retry-listener-group")
-	public void onMessage(ConsumerRecord<Integer, String> consumerRecord) throws Exception {
-		logger.info("Consumer Record in Retry Consumer : {}",consumerRecord);
+	public void onMessage(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception {
+		logger.debug("Consumer Record in Retry Consumer : {}",consumerRecord);
 		// With the below call,  retry consumer will going into loop 
 		// because we are trying to process same message and libraryEventsService will keep throwing the exception
 		// ** To verify that our retry consumer is working, we can simply check for the log in console.
@@ -0,0 +1,56 @@
+package com.learnkafka.controller;
+
+import java.util.NoSuchElementException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.learnkafka.domain.LibraryEventPage;
+import com.learnkafka.domain.LibraryEventView;
+import com.learnkafka.service.LibraryEventQueryService;
+
+/**
+ * Read API over the persisted library events, e.g.
+ * curl localhost:8091/v1/libraryevents/1
+ * curl 'localhost:8091/v1/libraryevents?limit=100'                      -- first page
+ * curl 'localhost:8091/v1/libraryevents?limit=100&afterId=<nextAfterId>' -- following pages
+ * curl 'localhost:8091/v1/libraryevents?bookAuthor=Dilip'                -- or bookName=<prefix>
+ */
+@RestController
+@RequestMapping("/v1/libraryevents")
+public class LibraryEventsQueryController {
+
+	private final LibraryEventQueryService libraryEventQueryService;
+
+	public LibraryEventsQueryController(LibraryEventQueryService libraryEventQueryService) {
+		this.libraryEventQueryService = libraryEventQueryService;
+	}
+
+	@GetMapping("/{libraryEventId}")
+	public LibraryEventView getLibraryEvent(@PathVariable Integer libraryEventId) {
+		return libraryEventQueryService.find(libraryEventId);
+	}
+
+	@GetMapping
+	public LibraryEventPage getLibraryEvents(@RequestParam(required = false) Integer afterId,
+			@RequestParam(required = false) Integer limit, @RequestParam(required = false) String bookAuthor,
+			@RequestParam(required = false) String bookName) {
+		return libraryEventQueryService.list(afterId, limit, bookAuthor, bookName);
+	}
+
+	@ExceptionHandler(NoSuchElementException.class)
+	public ResponseEntity<String> handleNotFound(NoSuchElementException ex) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<String> handleBadRequest(IllegalArgumentException ex) {
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+	}
+}
@@ -0,0 +1,76 @@
+package com.learnkafka.controller;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.learnkafka.domain.ReplayProgress;
+import com.learnkafka.domain.ReplayRequest;
+import com.learnkafka.service.ReplayService;
+
+/**
+ * Admin endpoints of ReplayService -- replay a range of the RETRY or DLT topic, e.g.
+ * curl -X POST localhost:8091/v1/replay -H 'Content-Type: application/json' \
+ *   -d '{"topic":"library-events.DLT","exception":"IllegalArgumentException","ratePerSecond":500,"parallelism":3}'
+ * The job runs in the background, GET /v1/replay/{jobId} shows its progress.
+ */
+@RestController
+@RequestMapping("/v1/replay")
+public class ReplayController {
+
+	private final ReplayService replayService;
+
+	public ReplayController(ReplayService replayService) {
+		this.replayService = replayService;
+	}
+
+	@PostMapping
+	public ResponseEntity<ReplayProgress> startReplay(@RequestBody ReplayRequest replayRequest) {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(replayService.start(replayRequest));
+	}
+
+	@GetMapping
+	public List<ReplayProgress> getReplays() {
+		return replayService.progress();
+	}
+
+	@GetMapping("/{jobId}")
+	public ReplayProgress getReplay(@PathVariable String jobId) {
+		return replayService.progress(jobId);
+	}
+
+	@PostMapping("/{jobId}/pause")
+	public ReplayProgress pauseReplay(@PathVariable String jobId) {
+		return replayService.pause(jobId);
+	}
+
+	@PostMapping("/{jobId}/resume")
+	public ReplayProgress resumeReplay(@PathVariable String jobId) {
+		return replayService.resume(jobId);
+	}
+
+	@ExceptionHandler(NoSuchElementException.class)
+	public ResponseEntity<String> handleNotFound(NoSuchElementException ex) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<String> handleBadRequest(IllegalArgumentException ex) {
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+	}
+
+	// pause of a job that is not running, resume of a running or completed one
+	@ExceptionHandler(IllegalStateException.class)
+	public ResponseEntity<String> handleConflict(IllegalStateException ex) {
+		return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+	}
+}
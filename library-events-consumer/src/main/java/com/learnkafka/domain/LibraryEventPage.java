@@ -0,0 +1,10 @@
+package com.learnkafka.domain;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated listing -- the next page is requested with afterId=nextAfterId,
+ * nextAfterId is null on the last page.
+ */
+public record LibraryEventPage(List<LibraryEventView> libraryEvents, Integer nextAfterId) {
+}
@@ -0,0 +1,21 @@
+package com.learnkafka.domain;
+
+import com.learnkafka.entity.LibraryEventType;
+
+/**
+ * Read model of a persisted library event, returned by /v1/libraryevents.
+ * Built by the DTO projections of LibraryEventsRepository, detached from the entities so it can be cached
+ * and serialized without touching the persistence context.
+ */
+public record LibraryEventView(Integer libraryEventId, LibraryEventType libraryEventType, BookView book) {
+
+	public record BookView(Integer bookId, String bookName, String bookAuthor) {
+	}
+
+	// select new ... of the projection queries -- JPQL constructor expressions can not be nested
+	public LibraryEventView(Integer libraryEventId, LibraryEventType libraryEventType, Integer bookId,
+			String bookName, String bookAuthor) {
+		this(libraryEventId, libraryEventType, bookId == null && bookName == null && bookAuthor == null ? null
+				: new BookView(bookId, bookName, bookAuthor));
+	}
+}
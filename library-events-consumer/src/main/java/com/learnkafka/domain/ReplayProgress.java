@@ -0,0 +1,47 @@
+package com.learnkafka.domain;
+
+import java.util.List;
+
+import com.learnkafka.entity.ReplayCheckpoint;
+import com.learnkafka.entity.ReplayJob;
+
+// response of the /v1/replay endpoints
+public record ReplayProgress(
+
+	String jobId,
+
+	String topic,
+
+	String status,
+
+	long replayed,
+
+	long skipped,
+
+	long failed,
+
+	// records left in the range, filtered ones included
+	long remaining,
+
+	List<PartitionProgress> partitions
+) {
+
+	public record PartitionProgress(int partition, long nextOffset, long endOffset, long replayed, long skipped,
+			long failed) {
+	}
+
+	public static ReplayProgress of(ReplayJob job, List<ReplayCheckpoint> checkpoints) {
+		var partitions = checkpoints.stream()
+				.map(checkpoint -> new PartitionProgress(checkpoint.getPartitionNumber(), checkpoint.getNextOffset(),
+						checkpoint.getEndOffset(), checkpoint.getReplayed(), checkpoint.getSkipped(),
+						checkpoint.getFailed()))
+				.toList();
+		return new ReplayProgress(job.getId(), job.getTopic(), job.getStatus(),
+				partitions.stream().mapToLong(PartitionProgress::replayed).sum(),
+				partitions.stream().mapToLong(PartitionProgress::skipped).sum(),
+				partitions.stream().mapToLong(PartitionProgress::failed).sum(),
+				partitions.stream().mapToLong(partition -> Math.max(0, partition.endOffset() - partition.nextOffset()))
+						.sum(),
+				partitions);
+	}
+}
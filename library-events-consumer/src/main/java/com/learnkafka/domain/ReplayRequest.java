@@ -0,0 +1,37 @@
+package com.learnkafka.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Body of POST /v1/replay. Only topic is required.
+ * The range starts at fromOffset or fromTimestamp (default: the beginning of each partition) and ends before
+ * toOffset or toTimestamp (default: the end of each partition when the replay is started).
+ * exception is matched against the exception headers the DeadLetterPublishingRecoverer adds to RETRY / DLT records.
+ */
+public record ReplayRequest(
+
+	String topic,
+
+	// null for all partitions
+	List<Integer> partitions,
+
+	Long fromOffset,
+
+	Long toOffset,
+
+	Instant fromTimestamp,
+
+	Instant toTimestamp,
+
+	String exception,
+
+	List<Integer> keys,
+
+	// records per second over all partitions, null for no limit
+	Integer ratePerSecond,
+
+	// partitions replayed at the same time, default 1
+	Integer parallelism
+) {
+}
@@ -1,27 +1,21 @@
 package com.learnkafka.entity;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
-import jakarta.persistence.JoinColumn;
-import jakarta.persistence.OneToOne;
+import jakarta.persistence.Embeddable;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-@Entity
+// Value type embedded in LibraryEvent -- its columns are part of the library_event row, so there is no second
+// table to join or select and no back reference for equals/hashCode/toString to walk through
+@Embeddable
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder
 public class Book {
 
-	@Id
 	private Integer bookId;
 	private String bookName;
 	private String bookAuthor;
-	
-	@OneToOne
-	@JoinColumn(name="libraryEventId")
-	private LibraryEvent libraryEvent;
 }
@@ -0,0 +1,41 @@
+package com.learnkafka.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// listener.mode=eos -- offset of the last processed record per partition, written in the same
+// DB transaction as the library event so the DB (not the kafka commit) decides what was processed
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+@IdClass(ConsumedOffset.Key.class)
+public class ConsumedOffset {
+
+	@Id
+	private String topic;
+
+	@Id
+	private Integer partitionNumber;
+
+	// offset of the next record to process -- same meaning as a kafka committed offset
+	private Long nextOffset;
+
+	@AllArgsConstructor
+	@NoArgsConstructor
+	@Data
+	public static class Key implements Serializable {
+
+		private String topic;
+
+		private Integer partitionNumber;
+	}
+}
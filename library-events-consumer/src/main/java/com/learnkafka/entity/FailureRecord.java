@@ -1,9 +1,13 @@
 package com.learnkafka.entity;
 
 
+import java.time.Instant;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,6 +19,10 @@ import lombok.NoArgsConstructor;
 @Data
 @Builder
 @Entity
+// RetryScheduler looks up due RETRY rows by status + nextAttemptAt (findAllByStatus uses the same index)
+// and the rows of its claim by claimedBy -- db/migration/common/V1 has to declare the same indexes
+@Table(indexes = { @Index(name = "idx_failure_record_status_next_attempt", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_failure_record_claimed_by", columnList = "claimedBy") })
 public class FailureRecord {
     @Id
     @GeneratedValue
@@ -26,5 +34,13 @@ public class FailureRecord {
     private Long offset_value;
     private String exception;
     private String status;
+    // json or binary (base64 in errorRecord) -- null for records stored before the binary format existed
+    private String valueFormat;
+    // RetryScheduler bookkeeping -- retries so far and when the next one is due (exponential backoff)
+    private Integer attempts;
+    private Instant nextAttemptAt;
+    // claim token of the RetryScheduler run working on the row, the claim expires at claimedUntil
+    private String claimedBy;
+    private Instant claimedUntil;
 
 }
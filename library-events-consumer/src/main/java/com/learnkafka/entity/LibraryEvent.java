@@ -1,35 +1,66 @@
 package com.learnkafka.entity;
 
-import jakarta.persistence.CascadeType;
+import org.hibernate.Hibernate;
+
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.OneToOne;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
-@Data
+@Getter
+@Setter
+@ToString
 @Builder
+// search by author / book name of /v1/libraryevents, libraryEventId second for the keyset order
+@Table(indexes = { @Index(name = "idx_library_event_book_author", columnList = "bookAuthor, libraryEventId"),
+		@Index(name = "idx_library_event_book_name", columnList = "bookName, libraryEventId") })
 public class LibraryEvent {
 
+	// pooled sequence -- one sequence call hands out allocationSize ids, inserts in between need no round trip
+	// and saveAll can send them as one JDBC batch
 	@Id
-	@GeneratedValue
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "library_event_seq")
+	@SequenceGenerator(name = "library_event_seq", sequenceName = "library_event_seq", allocationSize = 50)
 	private Integer libraryEventId;
 	
 	@Enumerated(EnumType.STRING)
 	private LibraryEventType libraryEventType;
 	
-	@OneToOne(mappedBy ="libraryEvent", cascade= {CascadeType.ALL})
-	@ToString.Exclude
+	@Embedded
 	private Book book;
+
+	// identity of the row, not of its state -- a new event is only equal to itself
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) {
+			return false;
+		}
+		return libraryEventId != null && libraryEventId.equals(((LibraryEvent) other).getLibraryEventId());
+	}
+
+	// constant per class, so the hash does not change when persist assigns the id
+	@Override
+	public int hashCode() {
+		return Hibernate.getClass(this).hashCode();
+	}
 }
 
 /**
@@ -0,0 +1,51 @@
+package com.learnkafka.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// progress of a ReplayJob on one partition -- a paused job resumes at nextOffset
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+@IdClass(ReplayCheckpoint.Key.class)
+public class ReplayCheckpoint {
+
+	@Id
+	private String jobId;
+
+	@Id
+	private Integer partitionNumber;
+
+	// offset of the next record to replay
+	private Long nextOffset;
+
+	// the range ends before this offset, resolved when the job was started
+	private Long endOffset;
+
+	private Long replayed;
+
+	// filtered out
+	private Long skipped;
+
+	// failed again, handed to FailureService
+	private Long failed;
+
+	@AllArgsConstructor
+	@NoArgsConstructor
+	@Data
+	public static class Key implements Serializable {
+
+		private String jobId;
+
+		private Integer partitionNumber;
+	}
+}
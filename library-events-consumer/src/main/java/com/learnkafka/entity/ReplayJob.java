@@ -0,0 +1,48 @@
+package com.learnkafka.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A replay of a RETRY / DLT topic range through LibraryEventsService, see ReplayService.
+// The progress per partition is kept in ReplayCheckpoint
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+// findAllByStatus at startup
+@Table(indexes = @Index(name = "idx_replay_job_status", columnList = "status"))
+public class ReplayJob {
+
+	@Id
+	private String id;
+
+	private String topic;
+
+	// only records with an exception header containing this text, null for all records
+	private String exceptionFilter;
+
+	// only records with one of these keys (comma separated), null for all records
+	private String keyFilter;
+
+	// records per second over all partitions of the job, null for no limit
+	private Integer ratePerSecond;
+
+	// partitions replayed at the same time
+	private Integer parallelism;
+
+	// ReplayJobStatus
+	private String status;
+
+	private Instant createdAt;
+
+	private Instant updatedAt;
+}
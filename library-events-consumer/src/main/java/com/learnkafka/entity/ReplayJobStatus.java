@@ -0,0 +1,5 @@
+package com.learnkafka.entity;
+
+public enum ReplayJobStatus {
+	RUNNING, PAUSED, COMPLETED, FAILED;
+}
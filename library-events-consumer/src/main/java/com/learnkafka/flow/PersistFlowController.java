@@ -0,0 +1,188 @@
+package com.learnkafka.flow;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.learnkafka.metrics.LibraryEventsMetrics;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * flowControl.enabled -- keeps the listeners from pulling records faster than the DB persists them.
+ * LibraryEventsServiceImpl reports every persist call (latency, records, failed or not) and the controller
+ * evaluates the calls of the last interval, AIMD style:
+ * - the mean latency is above flowControl.targetLatency or the error rate above flowControl.maxErrorRate:
+ *   the record rate is cut by decreaseFactor
+ * - otherwise, if the interval used up its budget, the rate grows by increaseStep records/s
+ * The listener containers are paused once the records of the interval reach the rate budget, and for a whole
+ * interval when the latency is above twice the target or the error rate is exceeded. They are resumed at the next
+ * interval. A paused container keeps polling (no records) and, with pauseImmediate, leaves the rest of the current
+ * poll for after the resume, so a slow DB stretches the time to process a poll but not the time between polls --
+ * max.poll.interval.ms is not exceeded and the group does not rebalance.
+ * The persists of RetryScheduler and ReplayService go through the same service and count against the same budget.
+ */
+@Component
+public class PersistFlowController {
+
+	private static final Logger log = LoggerFactory.getLogger(PersistFlowController.class);
+
+	@Value("${flowControl.enabled:false}")
+	boolean enabled;
+
+	@Value("${flowControl.targetLatency:50ms}")
+	Duration targetLatency;
+
+	@Value("${flowControl.maxErrorRate:0.1}")
+	double maxErrorRate;
+
+	// fixedDelay of evaluate()
+	@Value("${flowControl.intervalMs:1000}")
+	long intervalMs;
+
+	// records per second
+	@Value("${flowControl.initialRate:1000}")
+	double initialRate;
+
+	@Value("${flowControl.minRate:10}")
+	double minRate;
+
+	@Value("${flowControl.maxRate:100000}")
+	double maxRate;
+
+	@Value("${flowControl.increaseStep:100}")
+	double increaseStep;
+
+	@Value("${flowControl.decreaseFactor:0.5}")
+	double decreaseFactor;
+
+	private final KafkaListenerEndpointRegistry endpointRegistry;
+
+	private final LibraryEventsMetrics libraryEventsMetrics;
+
+	// persist calls of the current interval
+	private final LongAdder calls = new LongAdder();
+
+	private final LongAdder latencyNanos = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LongAdder records = new LongAdder();
+
+	private volatile double rate;
+
+	// records the current interval may persist, rate * interval
+	private volatile long budget;
+
+	// null when the containers are running, otherwise why they were paused (rate, latency, errors)
+	private volatile String pausedFor;
+
+	public PersistFlowController(KafkaListenerEndpointRegistry endpointRegistry,
+			LibraryEventsMetrics libraryEventsMetrics) {
+		this.endpointRegistry = endpointRegistry;
+		this.libraryEventsMetrics = libraryEventsMetrics;
+	}
+
+	@PostConstruct
+	void init() {
+		if (!enabled) {
+			return;
+		}
+		setRate(initialRate);
+		libraryEventsMetrics.flowControl(this, controller -> controller.isPaused() ? 1 : 0,
+				PersistFlowController::getRate);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean isPaused() {
+		return pausedFor != null;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * One persist call of LibraryEventsServiceImpl -- a single event, or the saveAll of a whole poll in batch mode.
+	 */
+	public void recordPersist(long nanos, int persisted, boolean failed) {
+		if (!enabled) {
+			return;
+		}
+		calls.increment();
+		latencyNanos.add(nanos);
+		records.add(persisted);
+		if (failed) {
+			failures.increment();
+		}
+		if (pausedFor == null && records.sum() >= budget) {
+			pause("rate");
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${flowControl.intervalMs:1000}")
+	public void evaluate() {
+		if (!enabled) {
+			return;
+		}
+		long intervalCalls = calls.sumThenReset();
+		long intervalNanos = latencyNanos.sumThenReset();
+		long intervalFailures = failures.sumThenReset();
+		long intervalRecords = records.sumThenReset();
+		if (intervalCalls == 0) {
+			// nothing persisted -- idle, or paused with nothing left in flight
+			resume();
+			return;
+		}
+		long meanNanos = intervalNanos / intervalCalls;
+		double errorRate = (double) intervalFailures / intervalCalls;
+		boolean errors = errorRate > maxErrorRate;
+		if (errors || meanNanos > targetLatency.toNanos()) {
+			setRate(Math.max(minRate, rate * decreaseFactor));
+			log.info("Persist latency {}ms / error rate {} over target, record rate cut to {}/s",
+					meanNanos / 1_000_000.0, errorRate, rate);
+		} else if (intervalRecords >= budget) {
+			setRate(Math.min(maxRate, rate + increaseStep));
+		}
+		if (errors || meanNanos > 2 * targetLatency.toNanos()) {
+			// back off for the next interval, the in-flight records finish meanwhile
+			pause(errors ? "errors" : "latency");
+		} else {
+			resume();
+		}
+	}
+
+	private void setRate(double rate) {
+		this.rate = rate;
+		this.budget = Math.max(1, (long) (rate * intervalMs / 1000));
+	}
+
+	private synchronized void pause(String reason) {
+		if (pausedFor != null) {
+			return;
+		}
+		pausedFor = reason;
+		endpointRegistry.getListenerContainers().forEach(MessageListenerContainer::pause);
+		libraryEventsMetrics.flowControlPaused(reason);
+		log.debug("Listener containers paused for {}", reason);
+	}
+
+	private synchronized void resume() {
+		if (pausedFor == null) {
+			return;
+		}
+		pausedFor = null;
+		endpointRegistry.getListenerContainers().forEach(MessageListenerContainer::resume);
+		log.debug("Listener containers resumed, record rate {}/s", rate);
+	}
+}
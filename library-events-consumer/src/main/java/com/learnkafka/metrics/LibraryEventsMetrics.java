@@ -0,0 +1,126 @@
+package com.learnkafka.metrics;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Consumer side meters, exposed via /actuator/metrics and /actuator/prometheus:
+ * library.events.stage{stage=deserialize|validate|persist} -- time spent per processing stage
+ * library.events.record.lag{partition}                     -- now - record timestamp when the listener gets the record
+ * library.events.failure.records{status}                   -- records handed to FailureService
+ * library.events.retry.records{outcome}                    -- records replayed by RetryScheduler
+ * library.events.failure.journal.queue / .spilled          -- FailureJournal backlog and records spilled to disk
+ * library.events.replay.records{outcome}                   -- RETRY / DLT records read by ReplayService
+ * library.events.retry.tier{topic,outcome}                 -- retryTopics.enabled, records per retry tier topic
+ * library.events.store.entries / .bytes                     -- LibraryEventStateStore size, off-heap bytes allocated
+ * library.events.store.restore                              -- time the state store restore from the changelog took
+ * library.events.flow.paused / .rate                         -- PersistFlowController, containers paused (1/0), records/s
+ * library.events.flow.pauses{reason=rate|latency|errors}     -- times the listener containers were paused
+ */
+@Component
+public class LibraryEventsMetrics {
+
+	private final MeterRegistry meterRegistry;
+
+	private final Timer deserializeTimer;
+
+	private final Timer validateTimer;
+
+	private final Timer persistTimer;
+
+	// one timer per partition, looked up for every record
+	private final Map<Integer, Timer> lagTimers = new ConcurrentHashMap<>();
+
+	public LibraryEventsMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		this.deserializeTimer = stageTimer("deserialize");
+		this.validateTimer = stageTimer("validate");
+		this.persistTimer = stageTimer("persist");
+	}
+
+	public Timer deserializeTimer() {
+		return deserializeTimer;
+	}
+
+	public Timer validateTimer() {
+		return validateTimer;
+	}
+
+	public Timer persistTimer() {
+		return persistTimer;
+	}
+
+	public void recordLag(ConsumerRecord<?, ?> consumerRecord) {
+		if (consumerRecord.timestamp() < 0) {
+			return;
+		}
+		long lagMillis = Math.max(0, System.currentTimeMillis() - consumerRecord.timestamp());
+		lagTimers.computeIfAbsent(consumerRecord.partition(), partition -> Timer.builder("library.events.record.lag")
+				.tag("partition", String.valueOf(partition))
+				.register(meterRegistry))
+				.record(lagMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void failureRecordSaved(String status) {
+		counter("library.events.failure.records", "status", status).increment();
+	}
+
+	public void failureJournalQueue(Collection<?> queue) {
+		meterRegistry.gaugeCollectionSize("library.events.failure.journal.queue", Tags.empty(), queue);
+	}
+
+	public void failureJournalSpilled() {
+		meterRegistry.counter("library.events.failure.journal.spilled").increment();
+	}
+
+	public void retryRecord(String outcome) {
+		counter("library.events.retry.records", "outcome", outcome).increment();
+	}
+
+	public void retryTierRecord(String topic, String outcome) {
+		meterRegistry.counter("library.events.retry.tier", "topic", topic, "outcome", outcome).increment();
+	}
+
+	public void replayRecord(String outcome) {
+		counter("library.events.replay.records", "outcome", outcome).increment();
+	}
+
+	public <T> void stateStore(T stateStore, ToDoubleFunction<T> entries, ToDoubleFunction<T> bytes) {
+		Gauge.builder("library.events.store.entries", stateStore, entries).register(meterRegistry);
+		Gauge.builder("library.events.store.bytes", stateStore, bytes).baseUnit("bytes").register(meterRegistry);
+	}
+
+	public void stateStoreRestored(Duration restoreTime) {
+		meterRegistry.timer("library.events.store.restore").record(restoreTime);
+	}
+
+	public <T> void flowControl(T controller, ToDoubleFunction<T> paused, ToDoubleFunction<T> rate) {
+		Gauge.builder("library.events.flow.paused", controller, paused).register(meterRegistry);
+		Gauge.builder("library.events.flow.rate", controller, rate).baseUnit("records/s").register(meterRegistry);
+	}
+
+	public void flowControlPaused(String reason) {
+		counter("library.events.flow.pauses", "reason", reason).increment();
+	}
+
+	private Counter counter(String name, String tagKey, String tagValue) {
+		return meterRegistry.counter(name, tagKey, tagValue);
+	}
+
+	private Timer stageTimer(String stage) {
+		return Timer.builder("library.events.stage").tag("stage", stage).register(meterRegistry);
+	}
+}
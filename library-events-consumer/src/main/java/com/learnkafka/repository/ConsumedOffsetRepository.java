@@ -0,0 +1,25 @@
+package com.learnkafka.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.learnkafka.entity.ConsumedOffset;
+
+import jakarta.persistence.LockModeType;
+
+public interface ConsumedOffsetRepository extends CrudRepository<ConsumedOffset, ConsumedOffset.Key> {
+
+	// SELECT ... FOR UPDATE -- while a rebalance is in flight the old and the new owner of a partition
+	// may both get the same record, the row lock makes the second one see the first one's offset
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select c from ConsumedOffset c where c.topic = :topic and c.partitionNumber = :partitionNumber")
+	Optional<ConsumedOffset> findForUpdate(@Param("topic") String topic,
+			@Param("partitionNumber") Integer partitionNumber);
+
+	List<ConsumedOffset> findAllByTopic(String topic);
+}
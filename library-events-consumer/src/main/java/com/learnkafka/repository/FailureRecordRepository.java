@@ -1,11 +1,65 @@
 package com.learnkafka.repository;
 
 import com.learnkafka.entity.FailureRecord;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface FailureRecordRepository extends CrudRepository<FailureRecord,Integer> {
 
     List<FailureRecord> findAllByStatus(String status);
+
+    // rows of the given status that are due and not claimed by a live RetryScheduler run, oldest first
+    // (nextAttemptAt is null for rows stored before the backoff bookkeeping existed)
+    @Query("""
+            select f.bookId from FailureRecord f
+            where f.status = :status
+              and (f.nextAttemptAt is null or f.nextAttemptAt <= :now)
+              and (f.claimedUntil is null or f.claimedUntil < :now)
+            order by f.nextAttemptAt
+            """)
+    List<Integer> findDueIds(@Param("status") String status, @Param("now") Instant now, Pageable pageable);
+
+    // conditional update, so two instances racing for the same ids end up with disjoint rows
+    @Modifying
+    @Transactional
+    @Query("""
+            update FailureRecord f set f.claimedBy = :claimedBy, f.claimedUntil = :claimedUntil
+            where f.bookId in :ids and f.status = :status
+              and (f.claimedUntil is null or f.claimedUntil < :now)
+            """)
+    int claim(@Param("ids") Collection<Integer> ids, @Param("status") String status,
+              @Param("claimedBy") String claimedBy, @Param("claimedUntil") Instant claimedUntil,
+              @Param("now") Instant now);
+
+    List<FailureRecord> findAllByClaimedBy(String claimedBy);
+
+    // the updates below release the claim, they only touch rows still held by the given claim token
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update FailureRecord f set f.status = :status, f.claimedBy = null, f.claimedUntil = null
+            where f.bookId in :ids and f.claimedBy = :claimedBy
+            """)
+    int updateStatus(@Param("ids") Collection<Integer> ids, @Param("status") String status,
+                     @Param("claimedBy") String claimedBy);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update FailureRecord f set f.attempts = :attempts, f.nextAttemptAt = :nextAttemptAt,
+              f.claimedBy = null, f.claimedUntil = null
+            where f.bookId in :ids and f.claimedBy = :claimedBy
+            """)
+    int scheduleNextAttempt(@Param("ids") Collection<Integer> ids, @Param("attempts") Integer attempts,
+                            @Param("nextAttemptAt") Instant nextAttemptAt, @Param("claimedBy") String claimedBy);
 }
@@ -1,11 +1,64 @@
 package com.learnkafka.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.learnkafka.domain.LibraryEventView;
 import com.learnkafka.entity.LibraryEvent;
 
 @Repository
 public interface LibraryEventsRepository extends CrudRepository<LibraryEvent, Integer>{
 
+	@Query("select e.libraryEventId from LibraryEvent e order by e.libraryEventId desc")
+	List<Integer> findRecentLibraryEventIds(Pageable pageable);
+
+	@Query("select e.libraryEventId from LibraryEvent e where e.libraryEventId in :ids")
+	List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+	// DTO projection, one select of the library_event row and nothing attached to the persistence context
+	@Query("select new com.learnkafka.domain.LibraryEventView(e.libraryEventId, e.libraryEventType, e.book.bookId,"
+			+ " e.book.bookName, e.book.bookAuthor) from LibraryEvent e where e.libraryEventId = :libraryEventId")
+	Optional<LibraryEventView> findViewById(@Param("libraryEventId") Integer libraryEventId);
+
+	// keyset pagination -- the page after afterId in libraryEventId order.
+	// Pageable only carries the page size, always PageRequest.of(0, limit)
+	@Query("select new com.learnkafka.domain.LibraryEventView(e.libraryEventId, e.libraryEventType, e.book.bookId,"
+			+ " e.book.bookName, e.book.bookAuthor) from LibraryEvent e where e.libraryEventId > :afterId"
+			+ " order by e.libraryEventId")
+	List<LibraryEventView> findPageAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+	// served by the (bookAuthor, libraryEventId) index
+	@Query("select new com.learnkafka.domain.LibraryEventView(e.libraryEventId, e.libraryEventType, e.book.bookId,"
+			+ " e.book.bookName, e.book.bookAuthor) from LibraryEvent e where e.book.bookAuthor = :bookAuthor"
+			+ " and e.libraryEventId > :afterId order by e.libraryEventId")
+	List<LibraryEventView> findPageByBookAuthorAfter(@Param("bookAuthor") String bookAuthor,
+			@Param("afterId") Integer afterId, Pageable pageable);
+
+	// prefix match, served by the (bookName, libraryEventId) index
+	@Query("select new com.learnkafka.domain.LibraryEventView(e.libraryEventId, e.libraryEventType, e.book.bookId,"
+			+ " e.book.bookName, e.book.bookAuthor) from LibraryEvent e"
+			+ " where e.book.bookName like concat(:bookNamePrefix, '%') and e.libraryEventId > :afterId"
+			+ " order by e.libraryEventId")
+	List<LibraryEventView> findPageByBookNamePrefixAfter(@Param("bookNamePrefix") String bookNamePrefix,
+			@Param("afterId") Integer afterId, Pageable pageable);
+
+	// Single statement update of the book of an existing library event -- replaces the
+	// SELECT + UPDATE that save() (i.e. em.merge) issues for a detached LibraryEvent.
+	// The book is embedded, its columns are part of the library_event row.
+	// Keyed on libraryEventId and the stored bookId -- an UPDATE naming another book matches no row
+	@Modifying
+	@Transactional
+	@Query("update LibraryEvent e set e.book.bookName = :bookName, e.book.bookAuthor = :bookAuthor"
+			+ " where e.libraryEventId = :libraryEventId and e.book.bookId = :bookId")
+	int updateBook(@Param("bookId") Integer bookId, @Param("bookName") String bookName,
+			@Param("bookAuthor") String bookAuthor, @Param("libraryEventId") Integer libraryEventId);
 }
@@ -0,0 +1,12 @@
+package com.learnkafka.repository;
+
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+
+import com.learnkafka.entity.ReplayCheckpoint;
+
+public interface ReplayCheckpointRepository extends CrudRepository<ReplayCheckpoint, ReplayCheckpoint.Key> {
+
+	List<ReplayCheckpoint> findAllByJobIdOrderByPartitionNumber(String jobId);
+}
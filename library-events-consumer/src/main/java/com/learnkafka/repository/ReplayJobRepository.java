@@ -0,0 +1,12 @@
+package com.learnkafka.repository;
+
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+
+import com.learnkafka.entity.ReplayJob;
+
+public interface ReplayJobRepository extends CrudRepository<ReplayJob, String> {
+
+	List<ReplayJob> findAllByStatus(String status);
+}
@@ -1,19 +1,48 @@
 package com.learnkafka.scheduler;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import com.learnkafka.entity.FailureRecord;
 import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.metrics.LibraryEventsMetrics;
 import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.serialization.LibraryEventBinaryFormat;
+import com.learnkafka.service.FailureService;
 import com.learnkafka.service.LibraryEventsService;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Replays the RETRY rows stored by FailureService, one page at a time:
+ * 1. pick the ids of due rows (status + nextAttemptAt index) and claim them with a conditional update,
+ *    so several consumer instances can run the scheduler without processing a row twice.
+ *    A claim expires after claimTtl, rows of a crashed instance are picked up again.
+ * 2. process the claimed rows on a bounded worker pool
+ * 3. write the outcome with a few bulk updates per page: SUCCESS, DEAD after maxAttempts,
+ *    otherwise the next attempt is scheduled with exponential backoff (initialBackoff * 2^(attempts-1), capped at maxBackoff)
+ */
 @Component
 @Slf4j
 public class RetryScheduler {
@@ -24,34 +53,142 @@ public class RetryScheduler {
     @Autowired
     FailureRecordRepository failureRecordRepository;
 
+    @Autowired
+    LibraryEventsMetrics libraryEventsMetrics;
+
+    @Value("${retryScheduler.pageSize:100}")
+    int pageSize;
+
+    @Value("${retryScheduler.workers:4}")
+    int workers;
+
+    @Value("${retryScheduler.maxAttempts:5}")
+    int maxAttempts;
+
+    @Value("${retryScheduler.initialBackoff:15s}")
+    Duration initialBackoff;
+
+    @Value("${retryScheduler.maxBackoff:10m}")
+    Duration maxBackoff;
+
+    // has to cover processing a whole page
+    @Value("${retryScheduler.claimTtl:2m}")
+    Duration claimTtl;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    private ExecutorService workerPool;
+
+    @PostConstruct
+    void startWorkers() {
+        var threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            var thread = new Thread(runnable, "retry-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        workerPool.shutdown();
+    }
 
-    @Scheduled(fixedRate = 15000 ) // every 15 seconds
+    // fixedDelay -- the next run starts 15 seconds after the previous one completed, runs never overlap
+    @Scheduled(fixedDelayString = "${retryScheduler.fixedDelay:15000}")
     public void retryFailedRecords(){
        log.info("Retrying Failed Records Started! Date: {} ", new Date());
-       failureRecordRepository.findAllByStatus(LibraryEventStatus.RETRY.name())
-        .forEach(failureRecord -> {
-            try {
-                var consumerRecord = buildConsumerRecord(failureRecord);
-                try {
-                	// our code will keep throwing same exception 
-                	// so to just skip re-processing same failed record, putting try-catch here  
-                	libraryEventsService.processLibraryEvent(consumerRecord);
-                } catch (Exception e) {
-                	// ignore
-				}
-                failureRecord.setStatus(LibraryEventStatus.SKIPED.name());
-                failureRecordRepository.save(failureRecord);
-            } catch (Exception e){
-                log.error("Exception in retryFailedRecords : {} ", e.getMessage(), e);
+       int processed = 0;
+       List<Integer> dueIds;
+       while (!(dueIds = findDueIds()).isEmpty()) {
+           try {
+               var claimToken = instanceId + "-" + claimSequence.incrementAndGet();
+               var claimed = claim(dueIds, claimToken);
+               processPage(claimed, claimToken);
+               processed += claimed.size();
+           } catch (Exception e){
+               libraryEventsMetrics.retryRecord("error");
+               log.error("Exception in retryFailedRecords : {} ", e.getMessage(), e);
+               break;
+           }
+       }
+       log.info("Retrying Failed Records Completed! {} records, Date: {} ", processed, new Date());
+    }
+
+    private List<Integer> findDueIds() {
+        return failureRecordRepository.findDueIds(LibraryEventStatus.RETRY.name(), Instant.now(),
+                PageRequest.of(0, pageSize));
+    }
+
+    // rows claimed by another instance in the meantime are simply not part of the result
+    private List<FailureRecord> claim(List<Integer> dueIds, String claimToken) {
+        var now = Instant.now();
+        int claimedCount = failureRecordRepository.claim(dueIds, LibraryEventStatus.RETRY.name(), claimToken,
+                now.plus(claimTtl), now);
+        return claimedCount == 0 ? List.of() : failureRecordRepository.findAllByClaimedBy(claimToken);
+    }
+
+    private void processPage(List<FailureRecord> claimed, String claimToken) {
+        var results = claimed.stream()
+                .map(failureRecord -> CompletableFuture.supplyAsync(() -> retry(failureRecord), workerPool))
+                .toList();
+
+        List<Integer> succeeded = new ArrayList<>();
+        List<Integer> dead = new ArrayList<>();
+        // attempts -> ids, rows with the same attempt count share the same next attempt time
+        Map<Integer, List<Integer>> rescheduled = new TreeMap<>();
+        for (int i = 0; i < claimed.size(); i++) {
+            var failureRecord = claimed.get(i);
+            if (results.get(i).join()) {
+                succeeded.add(failureRecord.getBookId());
+                continue;
+            }
+            int attempts = (failureRecord.getAttempts() == null ? 0 : failureRecord.getAttempts()) + 1;
+            if (attempts >= maxAttempts) {
+                dead.add(failureRecord.getBookId());
+            } else {
+                rescheduled.computeIfAbsent(attempts, key -> new ArrayList<>()).add(failureRecord.getBookId());
             }
+        }
 
-        });
-       log.info("Retrying Failed Records Completed! Date: {} ", new Date());
+        if (!succeeded.isEmpty()) {
+            failureRecordRepository.updateStatus(succeeded, LibraryEventStatus.SUCCESS.name(), claimToken);
+        }
+        if (!dead.isEmpty()) {
+            failureRecordRepository.updateStatus(dead, LibraryEventStatus.DEAD.name(), claimToken);
+        }
+        var now = Instant.now();
+        rescheduled.forEach((attempts, ids) -> failureRecordRepository.scheduleNextAttempt(ids, attempts,
+                now.plus(backoff(attempts)), claimToken));
+    }
+
+    private boolean retry(FailureRecord failureRecord) {
+        try {
+            libraryEventsService.processLibraryEvent(buildConsumerRecord(failureRecord));
+            libraryEventsMetrics.retryRecord("success");
+            return true;
+        } catch (Exception e) {
+            libraryEventsMetrics.retryRecord("failure");
+            log.debug("Retry of failure record {} failed : {} ", failureRecord.getBookId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        var backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
     }
 
-    private ConsumerRecord<Integer, String> buildConsumerRecord(FailureRecord failureRecord) {
-        return new ConsumerRecord<>(failureRecord.getTopic(),
+    private ConsumerRecord<Integer, byte[]> buildConsumerRecord(FailureRecord failureRecord) {
+        var consumerRecord = new ConsumerRecord<>(failureRecord.getTopic(),
                 failureRecord.getPartition(), failureRecord.getOffset_value(), failureRecord.getKey_value(),
-                failureRecord.getErrorRecord());
+                FailureService.fromErrorRecord(failureRecord));
+        if (LibraryEventBinaryFormat.BINARY.equals(failureRecord.getValueFormat())) {
+            consumerRecord.headers().add(LibraryEventBinaryFormat.VALUE_FORMAT_HEADER,
+                    LibraryEventBinaryFormat.BINARY.getBytes(StandardCharsets.UTF_8));
+        }
+        return consumerRecord;
     }
 }
@@ -0,0 +1,171 @@
+package com.learnkafka.serialization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.utils.ByteUtils;
+
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+
+/**
+ * Compact binary wire format of LibraryEvent, written by the producer's LibraryEventBinarySerializer.
+ *
+ * <pre>
+ * byte    version (1)
+ * byte    presence flags -- 0x1 libraryEventId, 0x2 libraryEventType, 0x4 book
+ * int     libraryEventId
+ * byte    libraryEventType (0 NEW, 1 UPDATE)
+ * book:
+ *   byte    presence flags -- 0x1 bookId, 0x2 bookName, 0x4 bookAuthor
+ *   int     bookId
+ *   varint  length + UTF-8 bytes of bookName
+ *   varint  length + UTF-8 bytes of bookAuthor
+ * </pre>
+ * Records in this format carry the header value-format=binary, records without the header are JSON.
+ */
+public final class LibraryEventBinaryFormat {
+
+	public static final String VALUE_FORMAT_HEADER = "value-format";
+
+	public static final String BINARY = "binary";
+
+	public static final String JSON = "json";
+
+	static final byte VERSION = 1;
+
+	private static final byte HAS_ID = 0x1;
+	private static final byte HAS_TYPE = 0x2;
+	private static final byte HAS_BOOK = 0x4;
+
+	private static final byte HAS_BOOK_ID = 0x1;
+	private static final byte HAS_BOOK_NAME = 0x2;
+	private static final byte HAS_BOOK_AUTHOR = 0x4;
+
+	private static final LibraryEventType[] EVENT_TYPES = LibraryEventType.values();
+
+	private static final byte[] BINARY_BYTES = BINARY.getBytes(StandardCharsets.UTF_8);
+
+	private LibraryEventBinaryFormat() {
+	}
+
+	public static boolean isBinary(Headers headers) {
+		if (headers == null) {
+			return false;
+		}
+		Header header = headers.lastHeader(VALUE_FORMAT_HEADER);
+		return header != null && Arrays.equals(BINARY_BYTES, header.value());
+	}
+
+	public static LibraryEvent decode(byte[] data) {
+		var buffer = ByteBuffer.wrap(data);
+		try {
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new SerializationException("Unsupported LibraryEvent binary format version: " + version);
+			}
+			byte flags = buffer.get();
+			var libraryEvent = new LibraryEvent();
+			if ((flags & HAS_ID) != 0) {
+				libraryEvent.setLibraryEventId(buffer.getInt());
+			}
+			if ((flags & HAS_TYPE) != 0) {
+				libraryEvent.setLibraryEventType(EVENT_TYPES[buffer.get()]);
+			}
+			if ((flags & HAS_BOOK) != 0) {
+				byte bookFlags = buffer.get();
+				var book = new Book();
+				if ((bookFlags & HAS_BOOK_ID) != 0) {
+					book.setBookId(buffer.getInt());
+				}
+				if ((bookFlags & HAS_BOOK_NAME) != 0) {
+					book.setBookName(getString(buffer));
+				}
+				if ((bookFlags & HAS_BOOK_AUTHOR) != 0) {
+					book.setBookAuthor(getString(buffer));
+				}
+				libraryEvent.setBook(book);
+			}
+			return libraryEvent;
+		} catch (RuntimeException e) {
+			if (e instanceof SerializationException) {
+				throw e;
+			}
+			throw new SerializationException("Malformed LibraryEvent binary payload", e);
+		}
+	}
+
+	// LibraryEventStateStore changelog values, also used by tests and benchmarks
+	public static byte[] encode(LibraryEvent event) {
+		var book = event.getBook();
+		byte[] bookName = book == null || book.getBookName() == null ? null
+				: book.getBookName().getBytes(StandardCharsets.UTF_8);
+		byte[] bookAuthor = book == null || book.getBookAuthor() == null ? null
+				: book.getBookAuthor().getBytes(StandardCharsets.UTF_8);
+
+		byte flags = 0;
+		int size = 2;
+		if (event.getLibraryEventId() != null) {
+			flags |= HAS_ID;
+			size += Integer.BYTES;
+		}
+		if (event.getLibraryEventType() != null) {
+			flags |= HAS_TYPE;
+			size += 1;
+		}
+		byte bookFlags = 0;
+		if (book != null) {
+			flags |= HAS_BOOK;
+			size += 1;
+			if (book.getBookId() != null) {
+				bookFlags |= HAS_BOOK_ID;
+				size += Integer.BYTES;
+			}
+			if (bookName != null) {
+				bookFlags |= HAS_BOOK_NAME;
+				size += ByteUtils.sizeOfUnsignedVarint(bookName.length) + bookName.length;
+			}
+			if (bookAuthor != null) {
+				bookFlags |= HAS_BOOK_AUTHOR;
+				size += ByteUtils.sizeOfUnsignedVarint(bookAuthor.length) + bookAuthor.length;
+			}
+		}
+
+		var buffer = ByteBuffer.allocate(size);
+		buffer.put(VERSION).put(flags);
+		if (event.getLibraryEventId() != null) {
+			buffer.putInt(event.getLibraryEventId());
+		}
+		if (event.getLibraryEventType() != null) {
+			buffer.put((byte) event.getLibraryEventType().ordinal());
+		}
+		if (book != null) {
+			buffer.put(bookFlags);
+			if (book.getBookId() != null) {
+				buffer.putInt(book.getBookId());
+			}
+			putString(buffer, bookName);
+			putString(buffer, bookAuthor);
+		}
+		return buffer.array();
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] utf8) {
+		if (utf8 != null) {
+			ByteUtils.writeUnsignedVarint(utf8.length, buffer);
+			buffer.put(utf8);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = ByteUtils.readUnsignedVarint(buffer);
+		var value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+}
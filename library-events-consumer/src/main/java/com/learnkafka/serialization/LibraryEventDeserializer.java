@@ -0,0 +1,47 @@
+package com.learnkafka.serialization;
+
+import java.io.IOException;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.learnkafka.entity.LibraryEvent;
+
+/**
+ * Reads the library-events value in either format, chosen by the value-format header.
+ * The listener containers consume the raw bytes (ByteArrayDeserializer) and the service decodes them with this
+ * class, so failed records keep their original payload for FailureService, the RETRY and DLT topics.
+ */
+@Component
+public class LibraryEventDeserializer implements Deserializer<LibraryEvent> {
+
+	private final ObjectReader libraryEventReader;
+
+	public LibraryEventDeserializer(ObjectMapper objectMapper) {
+		this.libraryEventReader = objectMapper.readerFor(LibraryEvent.class);
+	}
+
+	@Override
+	public LibraryEvent deserialize(String topic, byte[] data) {
+		return deserialize(topic, null, data);
+	}
+
+	@Override
+	public LibraryEvent deserialize(String topic, Headers headers, byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (LibraryEventBinaryFormat.isBinary(headers)) {
+			return LibraryEventBinaryFormat.decode(data);
+		}
+		try {
+			return libraryEventReader.readValue(data);
+		} catch (IOException e) {
+			throw new SerializationException("Can't deserialize LibraryEvent : " + e.getMessage(), e);
+		}
+	}
+}
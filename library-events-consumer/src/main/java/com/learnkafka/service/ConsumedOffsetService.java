@@ -0,0 +1,74 @@
+package com.learnkafka.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.learnkafka.entity.ConsumedOffset;
+import com.learnkafka.repository.ConsumedOffsetRepository;
+
+/**
+ * DB stored consumer offsets for listener.mode=eos.
+ * tryAdvance() has to run in the transaction that persists the record, so the event and its offset
+ * are committed (or rolled back) together. On partition assignment the consumer seeks to nextOffsets(),
+ * the kafka committed offset is only a hint that may lag behind.
+ */
+@Service
+public class ConsumedOffsetService {
+
+	private final ConsumedOffsetRepository consumedOffsetRepository;
+
+	private final boolean enabled;
+
+	public ConsumedOffsetService(ConsumedOffsetRepository consumedOffsetRepository,
+			@Value("${listener.mode:record}") String listenerMode) {
+		this.consumedOffsetRepository = consumedOffsetRepository;
+		this.enabled = "eos".equals(listenerMode);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Moves the stored offset past the given record.
+	 * @return false if the record was already processed, i.e. it is a redelivery and must be skipped
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public boolean tryAdvance(ConsumerRecord<?, ?> consumerRecord) {
+		var consumedOffset = consumedOffsetRepository.findForUpdate(consumerRecord.topic(), consumerRecord.partition())
+				.orElseGet(() -> ConsumedOffset.builder()
+						.topic(consumerRecord.topic())
+						.partitionNumber(consumerRecord.partition())
+						.nextOffset(0L)
+						.build());
+		if (consumerRecord.offset() < consumedOffset.getNextOffset()) {
+			return false;
+		}
+		consumedOffset.setNextOffset(consumerRecord.offset() + 1);
+		consumedOffsetRepository.save(consumedOffset);
+		return true;
+	}
+
+	@Transactional(readOnly = true)
+	public Map<TopicPartition, Long> nextOffsets(Collection<TopicPartition> topicPartitions) {
+		Map<TopicPartition, Long> nextOffsets = new HashMap<>();
+		topicPartitions.stream().map(TopicPartition::topic).distinct()
+				.flatMap(topic -> consumedOffsetRepository.findAllByTopic(topic).stream())
+				.forEach(consumedOffset -> {
+					var topicPartition = new TopicPartition(consumedOffset.getTopic(),
+							consumedOffset.getPartitionNumber());
+					if (topicPartitions.contains(topicPartition)) {
+						nextOffsets.put(topicPartition, consumedOffset.getNextOffset());
+					}
+				});
+		return nextOffsets;
+	}
+}
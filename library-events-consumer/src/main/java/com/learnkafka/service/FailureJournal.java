@@ -0,0 +1,283 @@
+package com.learnkafka.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.entity.FailureRecord;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.FailureRecordRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind journal for FailureRecords, used by FailureService.
+ * 1. append() puts the record into a bounded queue and waits until it is durable
+ * 2. a dedicated writer thread drains the queue and stores up to batchSize records with one saveAll,
+ *    a batch is flushed when it is full or flushIntervalMs after its first record
+ * 3. when the DB does not confirm within durableTimeoutMs (or the queue is full) the caller appends the record
+ *    to the spill file instead, fsync'd, and returns. The writer replays the spill file into the DB once idle.
+ *
+ * append() only returns once the record is in the DB or in the spill file, so the error handler never
+ * commits an offset past a failure that could still be lost. A queued entry is claimed either by the writer or by
+ * the spilling caller. A caller whose entry is in a batch already waits another durableTimeoutMs for that batch and
+ * then spills as well -- should the batch still go through, the record is stored twice and retried twice,
+ * which beats blocking the listener thread on a hanging saveAll.
+ */
+@Component
+public class FailureJournal {
+
+	private static final Logger log = LoggerFactory.getLogger(FailureJournal.class);
+
+	private enum State { QUEUED, WRITING, SPILLED }
+
+	private static final class Entry {
+
+		private final FailureRecord failureRecord;
+
+		private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+
+		private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+		private Entry(FailureRecord failureRecord) {
+			this.failureRecord = failureRecord;
+		}
+	}
+
+	private final FailureRecordRepository failureRecordRepository;
+
+	private final ObjectMapper objectMapper;
+
+	private final LibraryEventsMetrics libraryEventsMetrics;
+
+	private final BlockingQueue<Entry> queue;
+
+	private final int batchSize;
+
+	private final long flushIntervalMs;
+
+	private final long durableTimeoutMs;
+
+	private final long replayIntervalMs;
+
+	private final Path spillFile;
+
+	private final Path replayFile;
+
+	private final Object spillLock = new Object();
+
+	private FileChannel spillChannel;
+
+	private volatile boolean running;
+
+	private Thread writer;
+
+	private long lastReplay;
+
+	public FailureJournal(FailureRecordRepository failureRecordRepository, ObjectMapper objectMapper,
+			LibraryEventsMetrics libraryEventsMetrics,
+			@Value("${failureJournal.capacity:10000}") int capacity,
+			@Value("${failureJournal.batchSize:100}") int batchSize,
+			@Value("${failureJournal.flushIntervalMs:50}") long flushIntervalMs,
+			@Value("${failureJournal.durableTimeoutMs:1000}") long durableTimeoutMs,
+			@Value("${failureJournal.replayIntervalMs:10000}") long replayIntervalMs,
+			@Value("${failureJournal.spillFile:failure-journal.spill}") String spillFile) {
+		this.failureRecordRepository = failureRecordRepository;
+		this.objectMapper = objectMapper;
+		this.libraryEventsMetrics = libraryEventsMetrics;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.flushIntervalMs = flushIntervalMs;
+		this.durableTimeoutMs = durableTimeoutMs;
+		this.replayIntervalMs = replayIntervalMs;
+		this.spillFile = Path.of(spillFile);
+		this.replayFile = Path.of(spillFile + ".replay");
+		libraryEventsMetrics.failureJournalQueue(queue);
+	}
+
+	@PostConstruct
+	void start() {
+		running = true;
+		writer = new Thread(this::writeLoop, "failure-journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException, IOException {
+		// the writer drains what is still queued before it exits
+		running = false;
+		writer.join(TimeUnit.SECONDS.toMillis(30));
+		synchronized (spillLock) {
+			closeSpillChannel();
+		}
+	}
+
+	/**
+	 * Blocks until the record is stored in the DB or in the spill file.
+	 */
+	public void append(FailureRecord failureRecord) {
+		var entry = new Entry(failureRecord);
+		if (!queue.offer(entry)) {
+			// the writer is far behind, don't wait for it
+			spill(entry);
+			return;
+		}
+		boolean interrupted = false;
+		try {
+			entry.written.get(durableTimeoutMs, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			spill(entry);
+		} catch (TimeoutException | InterruptedException e) {
+			interrupted = e instanceof InterruptedException;
+			if (entry.state.compareAndSet(State.QUEUED, State.SPILLED)) {
+				spill(entry);
+			} else {
+				// the writer has it in a batch already, that batch decides
+				interrupted |= awaitBatch(entry);
+			}
+		} finally {
+			// only now -- a FileChannel written by an interrupted thread is closed (ClosedByInterruptException)
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// true when the caller was interrupted meanwhile
+	private boolean awaitBatch(Entry entry) {
+		try {
+			entry.written.get(durableTimeoutMs, TimeUnit.MILLISECONDS);
+			return false;
+		} catch (InterruptedException e) {
+			spill(entry);
+			return true;
+		} catch (ExecutionException | TimeoutException e) {
+			spill(entry);
+			return false;
+		}
+	}
+
+	private void writeLoop() {
+		while (running || !queue.isEmpty()) {
+			try {
+				var first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					replaySpillFileIfDue();
+					continue;
+				}
+				List<Entry> batch = new ArrayList<>(batchSize);
+				batch.add(first);
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+				while (batch.size() < batchSize) {
+					long remaining = deadline - System.nanoTime();
+					var next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				write(batch);
+			} catch (InterruptedException e) {
+				running = false;
+			} catch (Exception e) {
+				log.error("Exception in failure journal writer : {} ", e.getMessage(), e);
+			}
+		}
+	}
+
+	private void write(List<Entry> batch) {
+		var claimed = batch.stream().filter(entry -> entry.state.compareAndSet(State.QUEUED, State.WRITING)).toList();
+		if (claimed.isEmpty()) {
+			return;
+		}
+		try {
+			failureRecordRepository.saveAll(claimed.stream().map(entry -> entry.failureRecord).toList());
+			claimed.forEach(entry -> entry.written.complete(null));
+		} catch (Exception e) {
+			log.error("Could not store {} failure records, spilling them : {} ", claimed.size(), e.getMessage());
+			claimed.forEach(entry -> entry.written.completeExceptionally(e));
+		}
+	}
+
+	private void spill(Entry entry) {
+		try {
+			byte[] line = (objectMapper.writeValueAsString(entry.failureRecord) + "\n").getBytes(StandardCharsets.UTF_8);
+			synchronized (spillLock) {
+				// an interrupt elsewhere may have closed it
+				if (spillChannel == null || !spillChannel.isOpen()) {
+					spillChannel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+							StandardOpenOption.APPEND);
+				}
+				var buffer = ByteBuffer.wrap(line);
+				while (buffer.hasRemaining()) {
+					spillChannel.write(buffer);
+				}
+				spillChannel.force(false);
+			}
+			libraryEventsMetrics.failureJournalSpilled();
+		} catch (IOException e) {
+			// neither the DB nor the disk took it -- fail the recoverer so the error handler does not commit past it
+			throw new IllegalStateException("Could not store the failure record durably", e);
+		}
+	}
+
+	// one saveAll for the whole file -- all or nothing, a failed replay is retried on the next round
+	private void replaySpillFileIfDue() throws IOException {
+		long now = System.currentTimeMillis();
+		if (now - lastReplay < replayIntervalMs) {
+			return;
+		}
+		lastReplay = now;
+		if (!Files.exists(replayFile)) {
+			synchronized (spillLock) {
+				if (!Files.exists(spillFile) || Files.size(spillFile) == 0) {
+					return;
+				}
+				closeSpillChannel();
+				Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+			}
+		}
+		List<FailureRecord> failureRecords = new ArrayList<>();
+		for (String line : Files.readAllLines(replayFile, StandardCharsets.UTF_8)) {
+			if (!line.isBlank()) {
+				failureRecords.add(objectMapper.readValue(line, FailureRecord.class));
+			}
+		}
+		try {
+			failureRecordRepository.saveAll(failureRecords);
+			Files.delete(replayFile);
+			log.info("Replayed {} spilled failure records into the DB", failureRecords.size());
+		} catch (Exception e) {
+			log.warn("Could not replay the spilled failure records, retrying later : {} ", e.getMessage());
+		}
+	}
+
+	private void closeSpillChannel() throws IOException {
+		if (spillChannel != null) {
+			spillChannel.close();
+			spillChannel = null;
+		}
+	}
+}
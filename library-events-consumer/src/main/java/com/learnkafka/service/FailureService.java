@@ -1,26 +1,94 @@
 package com.learnkafka.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.learnkafka.entity.FailureRecord;
+import com.learnkafka.metrics.LibraryEventsMetrics;
 import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.serialization.LibraryEventBinaryFormat;
 
 @Service
 public class FailureService {
 
     private FailureRecordRepository failureRecordRepository;
 
-    public FailureService(FailureRecordRepository failureRecordRepository) {
+    private LibraryEventsMetrics libraryEventsMetrics;
+
+    private ConsumedOffsetService consumedOffsetService;
+
+    private FailureJournal failureJournal;
+
+    private TransactionTemplate transactionTemplate;
+
+    public FailureService(FailureRecordRepository failureRecordRepository, LibraryEventsMetrics libraryEventsMetrics,
+            ConsumedOffsetService consumedOffsetService, FailureJournal failureJournal,
+            TransactionTemplate transactionTemplate) {
         this.failureRecordRepository = failureRecordRepository;
+        this.libraryEventsMetrics = libraryEventsMetrics;
+        this.consumedOffsetService = consumedOffsetService;
+        this.failureJournal = failureJournal;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    public void saveFailedRecord(ConsumerRecord<Integer, String> record, Exception exception, String recordStatus){
-        var failureRecord = new FailureRecord(null,record.topic(), record.key(),  record.value(), record.partition(),record.offset(),
-                exception.getCause().getMessage(),
-                recordStatus);
+    // Returns once the failure record is durable (DB or FailureJournal spill file), the error handler
+    // commits the offset of the failed record right after the recoverer returns
+    public void saveFailedRecord(ConsumerRecord<Integer, byte[]> record, Exception exception, String recordStatus){
+        var failureRecord = toFailureRecord(record, exception, recordStatus);
+        if (consumedOffsetService.isEnabled()) {
+            // listener.mode=eos -- a recovered record counts as consumed, its offset is stored with the failure
+            // record in one transaction, so it can't go through the write-behind journal
+            transactionTemplate.executeWithoutResult(status -> {
+                if (consumedOffsetService.tryAdvance(record)) {
+                    failureRecordRepository.save(failureRecord);
+                }
+            });
+        } else {
+            // batched with the failures of the other listener threads instead of one save per record
+            failureJournal.append(failureRecord);
+        }
+        libraryEventsMetrics.failureRecordSaved(recordStatus);
+    }
+
+    private FailureRecord toFailureRecord(ConsumerRecord<Integer, byte[]> record, Exception exception,
+            String recordStatus) {
+        var binary = LibraryEventBinaryFormat.isBinary(record.headers());
+        var failureRecord = FailureRecord.builder()
+                .topic(record.topic())
+                .key_value(record.key())
+                .errorRecord(toErrorRecord(record.value(), binary))
+                .partition(record.partition())
+                .offset_value(record.offset())
+                // the listener exception usually wraps the real one, records failed on a keyed lane are not wrapped
+                .exception(NestedExceptionUtils.getMostSpecificCause(exception).getMessage())
+                .status(recordStatus)
+                .valueFormat(binary ? LibraryEventBinaryFormat.BINARY : LibraryEventBinaryFormat.JSON)
+                .attempts(0)
+                .nextAttemptAt(Instant.now())
+                .build();
+        return failureRecord;
+    }
 
-        failureRecordRepository.save(failureRecord);
+    // JSON payloads are kept readable in the errorRecord column, binary ones are base64 encoded
+    public static String toErrorRecord(byte[] value, boolean binary) {
+        if (value == null) {
+            return null;
+        }
+        return binary ? Base64.getEncoder().encodeToString(value) : new String(value, StandardCharsets.UTF_8);
+    }
 
+    public static byte[] fromErrorRecord(FailureRecord failureRecord) {
+        if (failureRecord.getErrorRecord() == null) {
+            return null;
+        }
+        return LibraryEventBinaryFormat.BINARY.equals(failureRecord.getValueFormat())
+                ? Base64.getDecoder().decode(failureRecord.getErrorRecord())
+                : failureRecord.getErrorRecord().getBytes(StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,75 @@
+package com.learnkafka.service;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.learnkafka.cache.LibraryEventViewCache;
+import com.learnkafka.domain.LibraryEventPage;
+import com.learnkafka.domain.LibraryEventView;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+/**
+ * Read side of the persisted library events, see LibraryEventsQueryController.
+ * Reads are DTO projections (LibraryEventView), single events go through LibraryEventViewCache.
+ * Listings are keyset paginated on libraryEventId (where libraryEventId > afterId order by libraryEventId limit n)
+ * so a deep page costs the same as the first one, and are not cached -- every page would be a different cache key.
+ * No transaction around find(), a cache hit does not check out a DB connection.
+ */
+@Service
+public class LibraryEventQueryService {
+
+	@Value("${readApi.defaultPageSize:50}")
+	int defaultPageSize;
+
+	@Value("${readApi.maxPageSize:500}")
+	int maxPageSize;
+
+	private final LibraryEventsRepository libraryEventsRepository;
+
+	private final LibraryEventViewCache libraryEventViewCache;
+
+	public LibraryEventQueryService(LibraryEventsRepository libraryEventsRepository,
+			LibraryEventViewCache libraryEventViewCache) {
+		this.libraryEventsRepository = libraryEventsRepository;
+		this.libraryEventViewCache = libraryEventViewCache;
+	}
+
+	public LibraryEventView find(Integer libraryEventId) {
+		var view = libraryEventViewCache.get(libraryEventId,
+				id -> libraryEventsRepository.findViewById(id).orElse(null));
+		if (view == null) {
+			throw new NoSuchElementException("Library event not found with given id: " + libraryEventId);
+		}
+		return view;
+	}
+
+	/**
+	 * Page of library events after afterId, optionally filtered by book author (exact) or book name (prefix).
+	 */
+	public LibraryEventPage list(Integer afterId, Integer limit, String bookAuthor, String bookName) {
+		if (bookAuthor != null && bookName != null) {
+			throw new IllegalArgumentException("Search by either bookAuthor or bookName");
+		}
+		int pageSize = limit == null ? defaultPageSize : limit;
+		if (pageSize < 1 || pageSize > maxPageSize) {
+			throw new IllegalArgumentException("limit has to be between 1 and " + maxPageSize);
+		}
+		int after = afterId == null ? 0 : afterId;
+		var pageable = PageRequest.of(0, pageSize);
+		List<LibraryEventView> views;
+		if (bookAuthor != null) {
+			views = libraryEventsRepository.findPageByBookAuthorAfter(bookAuthor, after, pageable);
+		} else if (bookName != null) {
+			views = libraryEventsRepository.findPageByBookNamePrefixAfter(bookName, after, pageable);
+		} else {
+			views = libraryEventsRepository.findPageAfter(after, pageable);
+		}
+		// a short page is the last one
+		Integer nextAfterId = views.size() < pageSize ? null : views.get(views.size() - 1).libraryEventId();
+		return new LibraryEventPage(views, nextAfterId);
+	}
+}
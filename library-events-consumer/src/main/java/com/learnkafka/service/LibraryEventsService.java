@@ -1,10 +1,16 @@
 package com.learnkafka.service;
 
+import java.util.List;
+
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.stereotype.Service;
 
 @Service
 public interface LibraryEventsService {
 
-	void processLibraryEvent(ConsumerRecord<Integer, String> consumerRecord) throws Exception;
+	void processLibraryEvent(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception;
+
+	void processLibraryEventExactlyOnce(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception;
+
+	void processLibraryEvents(List<ConsumerRecord<Integer, byte[]>> consumerRecords);
 }
@@ -1,17 +1,34 @@
 package com.learnkafka.service;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+
+import com.learnkafka.cache.LibraryEventIdCache;
+import com.learnkafka.cache.LibraryEventViewCache;
 import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.flow.PersistFlowController;
+import com.learnkafka.metrics.LibraryEventsMetrics;
 import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.serialization.LibraryEventDeserializer;
+import com.learnkafka.store.LibraryEventStateStore;
 
 @Service
 public class LibraryEventsServiceImpl implements LibraryEventsService {
@@ -19,31 +36,59 @@ public class LibraryEventsServiceImpl implements LibraryEventsService {
 	private static final Logger log = LoggerFactory.getLogger(LibraryEventsServiceImpl.class);
 	
 	@Autowired
-	private ObjectMapper objectMapper;
+	private LibraryEventDeserializer libraryEventDeserializer;
 	
 	@Autowired
 	private LibraryEventsRepository libraryEventsRepository;
 	
+	@Autowired
+	private LibraryEventIdCache libraryEventIdCache;
+	
+	// GET /v1/libraryevents/{id} near-cache, invalidated on every write
+	@Autowired
+	private LibraryEventViewCache libraryEventViewCache;
+	
+	// stateStore.enabled -- current view of the persisted events, restored from the changelog topic on startup
+	@Autowired
+	private LibraryEventStateStore libraryEventStateStore;
+	
+	// listener.mode=eos only
+	@Autowired
+	private ConsumedOffsetService consumedOffsetService;
+	
+	// deserialize / validate / persist timers
+	@Autowired
+	private LibraryEventsMetrics libraryEventsMetrics;
+	
+	// listener.mode=batch -- the UPDATE statements and the saveAll of a poll commit or roll back together
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	
+	// flowControl.enabled -- paces the listeners by the persist latency and error rate
+	@Autowired
+	private PersistFlowController persistFlowController;
+	
+	// UPDATE events are written with a single UPDATE statement instead of save() i.e. SELECT + UPDATE
+	@Value("${upsert.enabled:true}")
+	private boolean upsertEnabled;
+	
 	@Override
-	public void processLibraryEvent(ConsumerRecord<Integer, String> consumerRecord) throws Exception {
+	public void processLibraryEvent(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception {
 		String eventType = "";
 		try {
-			LibraryEvent libraryEvent = objectMapper.readValue(consumerRecord.value(), LibraryEvent.class);
+			LibraryEvent libraryEvent = deserialize(consumerRecord);
 			eventType = libraryEvent.getLibraryEventType().name();
-			log.info("LibraryEventsServiceImpl | libraryEvent : {}", libraryEvent);
+			log.debug("LibraryEventsServiceImpl | libraryEvent : {}", libraryEvent);
 			
-			// This condition added to replicate the addRetryableExceptions scenario
-			if(libraryEvent.getLibraryEventId()!=null && libraryEvent.getLibraryEventId()==999) {
-				throw new RecoverableDataAccessException("Temporary network error");
-			}
+			checkTemporaryNetworkError(libraryEvent);
 			
 			switch (libraryEvent.getLibraryEventType()) {
 			case NEW:
-				save(libraryEvent);
+				persist(1, () -> save(libraryEvent));
 				break;
 			case UPDATE:
-				validate(libraryEvent);
-				save(libraryEvent);
+				libraryEventsMetrics.validateTimer().record(() -> validate(libraryEvent));
+				persist(1, () -> update(libraryEvent));
 				break;
 			default:
 				log.error("Invalid Library Event Type");
@@ -55,20 +100,246 @@ public class LibraryEventsServiceImpl implements LibraryEventsService {
 		}
 	}
 
+	/**
+	 * listener.mode=eos -- the library event and the record offset (ConsumedOffset) are written in one DB transaction.
+	 * A record at or below the stored offset was already persisted before a crash / rebalance and is skipped,
+	 * if processing fails the offset rolls back with the event and the error handler takes over as usual.
+	 */
+	@Override
+	@Transactional(rollbackFor = Exception.class)
+	public void processLibraryEventExactlyOnce(ConsumerRecord<Integer, byte[]> consumerRecord) throws Exception {
+		if (!consumedOffsetService.tryAdvance(consumerRecord)) {
+			log.info("Skipping already processed record {}-{}@{}", consumerRecord.topic(), consumerRecord.partition(),
+					consumerRecord.offset());
+			return;
+		}
+		processLibraryEvent(consumerRecord);
+	}
+
+	/**
+	 * Batch flavour of processLibraryEvent, used when listener.mode=batch.
+	 * 1. all the records of the poll are deserialized up front (JSON or binary, per value-format header)
+	 * 2. UPDATE events are validated against LibraryEventStateStore / LibraryEventIdCache, the misses with one query
+	 *    for the whole poll
+	 * 3. everything before the first bad record is persisted -- the UPDATE statements first, an UPDATE that matches
+	 *    no row is the bad record, then the rest with saveAll and JDBC batched inserts (hibernate.jdbc.batch_size),
+	 *    all of it in one transaction -- if saveAll fails the UPDATEs before it are rolled back as well
+	 * The bad record is reported with BatchListenerFailedException so the error handler commits the
+	 * offsets before it and routes just that record to retry and the recoverer (FailureService).
+	 */
+	@Override
+	public void processLibraryEvents(List<ConsumerRecord<Integer, byte[]>> consumerRecords) {
+		List<LibraryEvent> libraryEvents = new ArrayList<>(consumerRecords.size());
+		int failedIndex = -1;
+		Exception failure = null;
+
+		for (var consumerRecord : consumerRecords) {
+			try {
+				LibraryEvent libraryEvent = deserialize(consumerRecord);
+				checkTemporaryNetworkError(libraryEvent);
+				libraryEvents.add(libraryEvent);
+			} catch (Exception e) {
+				failedIndex = libraryEvents.size();
+				failure = e;
+				break;
+			}
+		}
+
+		var validateSample = Timer.start();
+		Set<Integer> updateIds = new HashSet<>();
+		libraryEvents.stream()
+				.filter(libraryEvent -> libraryEvent.getLibraryEventType() == LibraryEventType.UPDATE)
+				.map(LibraryEvent::getLibraryEventId)
+				.filter(id -> id != null)
+				.forEach(updateIds::add);
+		Set<Integer> existingIds = new HashSet<>();
+		Set<Integer> idsToLookup = new HashSet<>();
+		updateIds.forEach(id -> (knownToExist(id) ? existingIds : idsToLookup).add(id));
+		if (!idsToLookup.isEmpty()) {
+			libraryEventsRepository.findExistingIds(idsToLookup).forEach(id -> {
+				existingIds.add(id);
+				libraryEventIdCache.add(id);
+			});
+		}
+
+		for (int i = 0; i < libraryEvents.size(); i++) {
+			var libraryEvent = libraryEvents.get(i);
+			if (libraryEvent.getLibraryEventType() == LibraryEventType.UPDATE) {
+				try {
+					validateExists(libraryEvent, existingIds);
+				} catch (IllegalArgumentException e) {
+					failedIndex = i;
+					failure = e;
+					break;
+				}
+			}
+		}
+		validateSample.stop(libraryEventsMetrics.validateTimer());
+
+		var toPersist = failedIndex < 0 ? libraryEvents : libraryEvents.subList(0, failedIndex);
+		if (!toPersist.isEmpty()) {
+			int missingIndex = timedPersist(toPersist.size(),
+					() -> transactionTemplate.execute(status -> persistAll(toPersist)));
+			var persisted = toPersist;
+			if (missingIndex >= 0) {
+				failedIndex = missingIndex;
+				failure = rejected(toPersist.get(missingIndex));
+				persisted = toPersist.subList(0, missingIndex);
+			}
+			persisted.forEach(libraryEvent -> {
+				libraryEventIdCache.add(libraryEvent.getLibraryEventId());
+				libraryEventViewCache.invalidate(libraryEvent.getLibraryEventId());
+				libraryEventStateStore.put(libraryEvent);
+			});
+			log.info("Successfully persist {} Library Events", persisted.size());
+		}
+		if (failure != null) {
+			log.error("Failed to process record at index {} of the batch | Error msg: {}", failedIndex,
+					failure.getMessage());
+			throw new BatchListenerFailedException(failure.getMessage(), failure, failedIndex);
+		}
+	}
+
+	// UPDATE statements in poll order up to the first one that matches no row (event gone or another bookId),
+	// then saveAll of the rest before it. Runs in the transaction of processLibraryEvents.
+	// Returns the index of that UPDATE, -1 when all of them matched
+	private int persistAll(List<LibraryEvent> libraryEvents) {
+		int missingIndex = -1;
+		if (upsertEnabled) {
+			for (int i = 0; i < libraryEvents.size(); i++) {
+				var libraryEvent = libraryEvents.get(i);
+				if (libraryEvent.getLibraryEventType() == LibraryEventType.UPDATE && updateBook(libraryEvent) == 0) {
+					missingIndex = i;
+					break;
+				}
+			}
+		}
+		var toSave = (missingIndex < 0 ? libraryEvents : libraryEvents.subList(0, missingIndex)).stream()
+				.filter(libraryEvent -> !upsertEnabled || libraryEvent.getLibraryEventType() != LibraryEventType.UPDATE)
+				.toList();
+		if (!toSave.isEmpty()) {
+			libraryEventsRepository.saveAll(toSave);
+		}
+		return missingIndex;
+	}
+
+	private void persist(int records, Runnable persist) {
+		timedPersist(records, () -> {
+			persist.run();
+			return null;
+		});
+	}
+
+	// persist stage -- timed, and reported to PersistFlowController with its outcome.
+	// An event that turns out not to exist is a bad record, not a DB failure
+	private <T> T timedPersist(int records, Supplier<T> persist) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			T result = persist.get();
+			failed = false;
+			return result;
+		} catch (IllegalArgumentException e) {
+			failed = false;
+			throw e;
+		} finally {
+			long nanos = System.nanoTime() - start;
+			libraryEventsMetrics.persistTimer().record(nanos, TimeUnit.NANOSECONDS);
+			persistFlowController.recordPersist(nanos, records, failed);
+		}
+	}
+
+	private LibraryEvent deserialize(ConsumerRecord<Integer, byte[]> consumerRecord) {
+		return libraryEventsMetrics.deserializeTimer().record(() -> libraryEventDeserializer
+				.deserialize(consumerRecord.topic(), consumerRecord.headers(), consumerRecord.value()));
+	}
+
+	// This condition added to replicate the addRetryableExceptions scenario
+	private void checkTemporaryNetworkError(LibraryEvent libraryEvent) {
+		if(libraryEvent.getLibraryEventId()!=null && libraryEvent.getLibraryEventId()==999) {
+			throw new RecoverableDataAccessException("Temporary network error");
+		}
+	}
+
+	private void validateExists(LibraryEvent libraryEvent, Set<Integer> existingIds) {
+		if(libraryEvent.getLibraryEventId()==null) {
+			throw new IllegalArgumentException("Library Event id is missing");
+		}
+		if(!existingIds.contains(libraryEvent.getLibraryEventId())) {
+			throw notFound(libraryEvent.getLibraryEventId());
+		}
+	}
+
+	// LibraryEventStateStore / LibraryEventIdCache hit -- only trusted when the UPDATE statement (upsert.enabled)
+	// reports a missing row, save() of a detached event would insert it instead
+	private boolean knownToExist(Integer libraryEventId) {
+		return upsertEnabled
+				&& (libraryEventStateStore.contains(libraryEventId) || libraryEventIdCache.contains(libraryEventId));
+	}
+
+	// the store / caches said the event exists but the DB has no row for it
+	private void forget(Integer libraryEventId) {
+		libraryEventStateStore.remove(libraryEventId);
+		libraryEventIdCache.invalidate(libraryEventId);
+		libraryEventViewCache.invalidate(libraryEventId);
+	}
+
+	// the UPDATE statement matched no row -- the event is gone although the store / caches knew it,
+	// or the UPDATE names another book than the stored one, which is not allowed
+	private IllegalArgumentException rejected(LibraryEvent libraryEvent) {
+		var libraryEventId = libraryEvent.getLibraryEventId();
+		if (libraryEventsRepository.existsById(libraryEventId)) {
+			return new IllegalArgumentException("Book id of library event " + libraryEventId + " can not be changed to "
+					+ libraryEvent.getBook().getBookId());
+		}
+		forget(libraryEventId);
+		return notFound(libraryEventId);
+	}
+
+	private static IllegalArgumentException notFound(Integer libraryEventId) {
+		return new IllegalArgumentException("Library event not found with given id: " + libraryEventId);
+	}
+
 	private void validate(LibraryEvent libraryEvent) {
 		if(libraryEvent.getLibraryEventId()==null) {
 			throw new IllegalArgumentException("Library Event id is missing");
 		}
-		Optional<LibraryEvent> libraryEventOptional = libraryEventsRepository.findById(libraryEvent.getLibraryEventId());
-		if(!libraryEventOptional.isPresent()) {
-			throw new IllegalArgumentException("Library event not found with given id: "+libraryEvent.getLibraryEventId());
+		if(knownToExist(libraryEvent.getLibraryEventId())) {
+			return;
+		}
+		// existsById only checks for the row, findById used to load the event and its book
+		if(!libraryEventsRepository.existsById(libraryEvent.getLibraryEventId())) {
+			throw notFound(libraryEvent.getLibraryEventId());
 		}
-		log.info("Validation is successful for the library event : {}", libraryEventOptional.get());
+		libraryEventIdCache.add(libraryEvent.getLibraryEventId());
+		log.debug("Validation is successful for the library event id : {}", libraryEvent.getLibraryEventId());
+	}
+	
+	private void update(LibraryEvent libraryEvent) {
+		if(!upsertEnabled) {
+			save(libraryEvent);
+			return;
+		}
+		if(updateBook(libraryEvent) == 0) {
+			throw rejected(libraryEvent);
+		}
+		libraryEventViewCache.invalidate(libraryEvent.getLibraryEventId());
+		libraryEventStateStore.put(libraryEvent);
+		log.debug("Successfully updated the book of Library Event: {}", libraryEvent.getLibraryEventId());
+	}
+	
+	// rows updated, 0 when the library event does not exist or has another bookId
+	private int updateBook(LibraryEvent libraryEvent) {
+		var book = libraryEvent.getBook();
+		return libraryEventsRepository.updateBook(book.getBookId(), book.getBookName(), book.getBookAuthor(),
+				libraryEvent.getLibraryEventId());
 	}
 	
 	private void save(LibraryEvent libraryEvent) {
-		libraryEvent.getBook().setLibraryEvent(libraryEvent);
 		libraryEventsRepository.save(libraryEvent);
-		log.info("Successfully persist the Library Event: {}", libraryEvent);
+		libraryEventIdCache.add(libraryEvent.getLibraryEventId());
+		libraryEventViewCache.invalidate(libraryEvent.getLibraryEventId());
+		libraryEventStateStore.put(libraryEvent);
+		log.debug("Successfully persist the Library Event: {}", libraryEvent);
 	}
 }
@@ -0,0 +1,419 @@
+package com.learnkafka.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Service;
+
+import com.learnkafka.domain.ReplayProgress;
+import com.learnkafka.domain.ReplayRequest;
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.entity.ReplayCheckpoint;
+import com.learnkafka.entity.ReplayJob;
+import com.learnkafka.entity.ReplayJobStatus;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.ReplayCheckpointRepository;
+import com.learnkafka.repository.ReplayJobRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replays a range of the RETRY or DLT topic through LibraryEventsService:
+ * 1. the range is resolved to a start and end offset per partition when the job is started,
+ *    so records published to the topic while the replay runs are not part of it
+ * 2. every partition is read in offset order by its own consumer (assign + seek, no consumer group),
+ *    up to parallelism partitions at a time, all of them sharing one TokenBucket (ratePerSecond)
+ * 3. records not matching the exception / key filter are skipped, records failing again go to FailureService
+ *    (RETRY or DEAD, like the listener's recoverer) instead of being replayed over and over
+ * 4. the position per partition is stored in ReplayCheckpoint every checkpointEvery records and when the job
+ *    is paused, resume continues from there. Records replayed after the last checkpoint are replayed again
+ *    when the application stops in between (at least once).
+ */
+@Service
+@Slf4j
+public class ReplayService {
+
+	private static final List<String> EXCEPTION_HEADERS = List.of(KafkaHeaders.DLT_EXCEPTION_FQCN,
+			KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN, KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+
+	@Value("${topics.retry:library-events.RETRY}")
+	String retryTopic;
+
+	@Value("${topics.dlt:library-events.DLT}")
+	String deadLetterTopic;
+
+	@Value("${replay.maxParallelism:8}")
+	int maxParallelism;
+
+	@Value("${replay.checkpointEvery:100}")
+	int checkpointEvery;
+
+	@Value("${replay.pollTimeout:1s}")
+	Duration pollTimeout;
+
+	private final ConsumerFactory<Object, Object> consumerFactory;
+
+	private final LibraryEventsService libraryEventsService;
+
+	private final FailureService failureService;
+
+	private final ReplayJobRepository replayJobRepository;
+
+	private final ReplayCheckpointRepository replayCheckpointRepository;
+
+	private final LibraryEventsMetrics libraryEventsMetrics;
+
+	private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+	public ReplayService(ConsumerFactory<Object, Object> consumerFactory, LibraryEventsService libraryEventsService,
+			FailureService failureService, ReplayJobRepository replayJobRepository,
+			ReplayCheckpointRepository replayCheckpointRepository, LibraryEventsMetrics libraryEventsMetrics) {
+		this.consumerFactory = consumerFactory;
+		this.libraryEventsService = libraryEventsService;
+		this.failureService = failureService;
+		this.replayJobRepository = replayJobRepository;
+		this.replayCheckpointRepository = replayCheckpointRepository;
+		this.libraryEventsMetrics = libraryEventsMetrics;
+	}
+
+	// a job of one instance, its checkpoints are only written by its partition workers
+	private static final class RunningJob {
+
+		private final ReplayJob job;
+
+		private final List<ReplayCheckpoint> checkpoints;
+
+		private final TokenBucket tokenBucket;
+
+		private final Set<Integer> keys;
+
+		private final ExecutorService workers;
+
+		private final AtomicBoolean pauseRequested = new AtomicBoolean();
+
+		private final AtomicBoolean failed = new AtomicBoolean();
+
+		private CompletableFuture<Void> completion;
+
+		private RunningJob(ReplayJob job, List<ReplayCheckpoint> checkpoints) {
+			this.job = job;
+			this.checkpoints = checkpoints;
+			this.tokenBucket = job.getRatePerSecond() == null ? null : new TokenBucket(job.getRatePerSecond());
+			this.keys = job.getKeyFilter() == null ? Set.of()
+					: Arrays.stream(job.getKeyFilter().split(",")).map(Integer::valueOf).collect(Collectors.toSet());
+			var threadCount = new AtomicInteger();
+			this.workers = Executors.newFixedThreadPool(job.getParallelism(), runnable -> {
+				var thread = new Thread(runnable, "replay-" + job.getId() + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	public ReplayProgress start(ReplayRequest request) {
+		if (!retryTopic.equals(request.topic()) && !deadLetterTopic.equals(request.topic())) {
+			throw new IllegalArgumentException("Only " + retryTopic + " and " + deadLetterTopic + " can be replayed");
+		}
+		int parallelism = request.parallelism() == null ? 1 : request.parallelism();
+		if (parallelism < 1 || parallelism > maxParallelism) {
+			throw new IllegalArgumentException("parallelism has to be between 1 and " + maxParallelism);
+		}
+		if (request.ratePerSecond() != null && request.ratePerSecond() < 1) {
+			throw new IllegalArgumentException("ratePerSecond has to be positive");
+		}
+
+		var now = Instant.now();
+		var job = ReplayJob.builder()
+				.id(UUID.randomUUID().toString())
+				.topic(request.topic())
+				.exceptionFilter(request.exception())
+				.keyFilter(request.keys() == null || request.keys().isEmpty() ? null
+						: request.keys().stream().map(String::valueOf).collect(Collectors.joining(",")))
+				.ratePerSecond(request.ratePerSecond())
+				.parallelism(parallelism)
+				.status(ReplayJobStatus.RUNNING.name())
+				.createdAt(now)
+				.updatedAt(now)
+				.build();
+		var checkpoints = resolveRange(job.getId(), request);
+		replayJobRepository.save(job);
+		replayCheckpointRepository.saveAll(checkpoints);
+		log.info("Replay {} of {} started, {} records in range", job.getId(), job.getTopic(),
+				ReplayProgress.of(job, checkpoints).remaining());
+		return launch(job, checkpoints);
+	}
+
+	public ReplayProgress pause(String jobId) {
+		var runningJob = runningJobs.get(jobId);
+		if (runningJob != null) {
+			// the workers store their checkpoint and stop, the job turns PAUSED once all of them did
+			runningJob.pauseRequested.set(true);
+			return ReplayProgress.of(runningJob.job, runningJob.checkpoints);
+		}
+		var job = findJob(jobId);
+		if (!ReplayJobStatus.RUNNING.name().equals(job.getStatus())) {
+			throw new IllegalStateException("Replay " + jobId + " is " + job.getStatus());
+		}
+		// RUNNING without workers -- started by an instance that is gone
+		updateStatus(job, ReplayJobStatus.PAUSED);
+		return progress(jobId);
+	}
+
+	public ReplayProgress resume(String jobId) {
+		var job = findJob(jobId);
+		if (runningJobs.containsKey(jobId) || ReplayJobStatus.COMPLETED.name().equals(job.getStatus())) {
+			throw new IllegalStateException("Replay " + jobId + " is " + job.getStatus());
+		}
+		updateStatus(job, ReplayJobStatus.RUNNING);
+		log.info("Replay {} resumed", jobId);
+		return launch(job, replayCheckpointRepository.findAllByJobIdOrderByPartitionNumber(jobId));
+	}
+
+	public ReplayProgress progress(String jobId) {
+		var runningJob = runningJobs.get(jobId);
+		if (runningJob != null) {
+			return ReplayProgress.of(runningJob.job, runningJob.checkpoints);
+		}
+		return ReplayProgress.of(findJob(jobId), replayCheckpointRepository.findAllByJobIdOrderByPartitionNumber(jobId));
+	}
+
+	public List<ReplayProgress> progress() {
+		return StreamSupport.stream(replayJobRepository.findAll().spliterator(), false)
+				.map(job -> progress(job.getId()))
+				.toList();
+	}
+
+	// jobs that were running when the application stopped -- resumed by hand, not by every instance that starts
+	@EventListener(ApplicationReadyEvent.class)
+	public void pauseOrphanedJobs() {
+		replayJobRepository.findAllByStatus(ReplayJobStatus.RUNNING.name()).forEach(job -> {
+			log.info("Replay {} was running when the application stopped, it is paused", job.getId());
+			updateStatus(job, ReplayJobStatus.PAUSED);
+		});
+	}
+
+	@PreDestroy
+	void stop() {
+		runningJobs.values().forEach(runningJob -> runningJob.pauseRequested.set(true));
+		runningJobs.values().forEach(runningJob -> runningJob.completion.join());
+	}
+
+	// package private for ReplayServiceTest
+	CompletableFuture<Void> completion(String jobId) {
+		var runningJob = runningJobs.get(jobId);
+		return runningJob == null ? CompletableFuture.completedFuture(null) : runningJob.completion;
+	}
+
+	private ReplayProgress launch(ReplayJob job, List<ReplayCheckpoint> checkpoints) {
+		var runningJob = new RunningJob(job, checkpoints);
+		runningJobs.put(job.getId(), runningJob);
+		var partitionReplays = checkpoints.stream()
+				.filter(checkpoint -> checkpoint.getNextOffset() < checkpoint.getEndOffset())
+				.map(checkpoint -> CompletableFuture.runAsync(() -> replayPartition(runningJob, checkpoint),
+						runningJob.workers))
+				.toArray(CompletableFuture[]::new);
+		var progress = ReplayProgress.of(job, checkpoints);
+		runningJob.completion = CompletableFuture.allOf(partitionReplays).handle((ignored, throwable) -> {
+			finish(runningJob);
+			return null;
+		});
+		return progress;
+	}
+
+	private void finish(RunningJob runningJob) {
+		runningJob.workers.shutdown();
+		var status = runningJob.failed.get() ? ReplayJobStatus.FAILED
+				: runningJob.pauseRequested.get() ? ReplayJobStatus.PAUSED : ReplayJobStatus.COMPLETED;
+		updateStatus(runningJob.job, status);
+		runningJobs.remove(runningJob.job.getId());
+		var progress = ReplayProgress.of(runningJob.job, runningJob.checkpoints);
+		log.info("Replay {} {} : {} replayed, {} skipped, {} failed, {} left", progress.jobId(), status,
+				progress.replayed(), progress.skipped(), progress.failed(), progress.remaining());
+	}
+
+	private void replayPartition(RunningJob runningJob, ReplayCheckpoint checkpoint) {
+		var topicPartition = new TopicPartition(runningJob.job.getTopic(), checkpoint.getPartitionNumber());
+		try (var consumer = createConsumer(runningJob.job.getId() + "-" + checkpoint.getPartitionNumber())) {
+			consumer.assign(List.of(topicPartition));
+			consumer.seek(topicPartition, checkpoint.getNextOffset());
+			int sinceCheckpoint = 0;
+			while (!runningJob.pauseRequested.get() && checkpoint.getNextOffset() < checkpoint.getEndOffset()) {
+				for (var consumerRecord : consumer.poll(pollTimeout).records(topicPartition)) {
+					if (runningJob.pauseRequested.get() || consumerRecord.offset() >= checkpoint.getEndOffset()) {
+						break;
+					}
+					@SuppressWarnings("unchecked")
+					var record = (ConsumerRecord<Integer, byte[]>) (ConsumerRecord<?, ?>) consumerRecord;
+					replay(runningJob, record, checkpoint);
+					checkpoint.setNextOffset(consumerRecord.offset() + 1);
+					if (++sinceCheckpoint >= checkpointEvery) {
+						replayCheckpointRepository.save(checkpoint);
+						sinceCheckpoint = 0;
+					}
+				}
+				if (!runningJob.pauseRequested.get() && consumer.position(topicPartition) >= checkpoint.getEndOffset()) {
+					// the end offset may be a transaction marker, there is no record at it
+					checkpoint.setNextOffset(checkpoint.getEndOffset());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			runningJob.pauseRequested.set(true);
+		} catch (Exception e) {
+			log.error("Replay {} of partition {} failed : {} ", runningJob.job.getId(), topicPartition, e.getMessage(),
+					e);
+			runningJob.failed.set(true);
+		} finally {
+			replayCheckpointRepository.save(checkpoint);
+		}
+	}
+
+	private void replay(RunningJob runningJob, ConsumerRecord<Integer, byte[]> record, ReplayCheckpoint checkpoint)
+			throws InterruptedException {
+		if (!matches(runningJob, record)) {
+			checkpoint.setSkipped(checkpoint.getSkipped() + 1);
+			libraryEventsMetrics.replayRecord("skipped");
+			return;
+		}
+		if (runningJob.tokenBucket != null) {
+			runningJob.tokenBucket.acquire();
+		}
+		try {
+			libraryEventsService.processLibraryEvent(record);
+			checkpoint.setReplayed(checkpoint.getReplayed() + 1);
+			libraryEventsMetrics.replayRecord("replayed");
+		} catch (Exception e) {
+			log.debug("Replay of {}-{}@{} failed : {} ", record.topic(), record.partition(), record.offset(),
+					e.getMessage());
+			var status = NestedExceptionUtils.getMostSpecificCause(e) instanceof RecoverableDataAccessException
+					? LibraryEventStatus.RETRY : LibraryEventStatus.DEAD;
+			failureService.saveFailedRecord(record, e, status.name());
+			checkpoint.setFailed(checkpoint.getFailed() + 1);
+			libraryEventsMetrics.replayRecord("failed");
+		}
+	}
+
+	private boolean matches(RunningJob runningJob, ConsumerRecord<Integer, byte[]> record) {
+		if (!runningJob.keys.isEmpty() && !runningJob.keys.contains(record.key())) {
+			return false;
+		}
+		var exceptionFilter = runningJob.job.getExceptionFilter();
+		if (exceptionFilter == null) {
+			return true;
+		}
+		for (var headerName : EXCEPTION_HEADERS) {
+			var header = record.headers().lastHeader(headerName);
+			if (header != null && new String(header.value(), StandardCharsets.UTF_8).contains(exceptionFilter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// one checkpoint per partition with the start and end offset of the requested range
+	private List<ReplayCheckpoint> resolveRange(String jobId, ReplayRequest request) {
+		try (var consumer = createConsumer(jobId)) {
+			List<TopicPartition> topicPartitions = new ArrayList<>();
+			for (PartitionInfo partitionInfo : consumer.partitionsFor(request.topic())) {
+				if (request.partitions() == null || request.partitions().contains(partitionInfo.partition())) {
+					topicPartitions.add(new TopicPartition(request.topic(), partitionInfo.partition()));
+				}
+			}
+			if (topicPartitions.isEmpty()) {
+				throw new IllegalArgumentException("No partitions of " + request.topic() + " to replay");
+			}
+			var beginningOffsets = consumer.beginningOffsets(topicPartitions);
+			var endOffsets = consumer.endOffsets(topicPartitions);
+			var fromTimestampOffsets = offsetsForTimes(consumer, topicPartitions, request.fromTimestamp());
+			var toTimestampOffsets = offsetsForTimes(consumer, topicPartitions, request.toTimestamp());
+
+			List<ReplayCheckpoint> checkpoints = new ArrayList<>();
+			for (var topicPartition : topicPartitions) {
+				long beginning = beginningOffsets.get(topicPartition);
+				long end = endOffsets.get(topicPartition);
+				long from = request.fromOffset() != null ? Math.max(request.fromOffset(), beginning)
+						: request.fromTimestamp() != null ? fromTimestampOffsets.getOrDefault(topicPartition, end)
+						: beginning;
+				long to = request.toOffset() != null ? Math.min(request.toOffset(), end)
+						: request.toTimestamp() != null ? toTimestampOffsets.getOrDefault(topicPartition, end)
+						: end;
+				checkpoints.add(ReplayCheckpoint.builder()
+						.jobId(jobId)
+						.partitionNumber(topicPartition.partition())
+						.nextOffset(from)
+						.endOffset(Math.max(from, to))
+						.replayed(0L)
+						.skipped(0L)
+						.failed(0L)
+						.build());
+			}
+			return checkpoints;
+		}
+	}
+
+	// first offset with a timestamp >= timestamp per partition, partitions without one are left out
+	private static Map<TopicPartition, Long> offsetsForTimes(Consumer<Object, Object> consumer,
+			List<TopicPartition> topicPartitions, Instant timestamp) {
+		Map<TopicPartition, Long> offsets = new HashMap<>();
+		if (timestamp == null) {
+			return offsets;
+		}
+		var timestamps = topicPartitions.stream()
+				.collect(Collectors.toMap(topicPartition -> topicPartition, topicPartition -> timestamp.toEpochMilli()));
+		consumer.offsetsForTimes(timestamps).forEach((topicPartition, offsetAndTimestamp) -> {
+			if (offsetAndTimestamp != null) {
+				offsets.put(topicPartition, offsetAndTimestamp.offset());
+			}
+		});
+		return offsets;
+	}
+
+	// not part of any consumer group -- partitions are assigned, nothing is committed to kafka
+	private Consumer<Object, Object> createConsumer(String clientIdSuffix) {
+		var properties = new Properties();
+		properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+		return consumerFactory.createConsumer("library-events-replay", "replay-", clientIdSuffix, properties);
+	}
+
+	private ReplayJob findJob(String jobId) {
+		return replayJobRepository.findById(jobId)
+				.orElseThrow(() -> new NoSuchElementException("Replay " + jobId + " not found"));
+	}
+
+	private void updateStatus(ReplayJob job, ReplayJobStatus status) {
+		job.setStatus(status.name());
+		job.setUpdatedAt(Instant.now());
+		replayJobRepository.save(job);
+	}
+}
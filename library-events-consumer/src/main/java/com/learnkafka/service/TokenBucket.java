@@ -0,0 +1,39 @@
+package com.learnkafka.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limit of a replay, shared by its partition workers. Permits are handed out evenly spaced at ratePerSecond,
+ * after an idle period up to one second worth of permits is available at once.
+ */
+class TokenBucket {
+
+	private final long nanosPerPermit;
+
+	private final long burstNanos;
+
+	// time the next permit is available at
+	private long nextFree = System.nanoTime();
+
+	TokenBucket(int ratePerSecond) {
+		this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+		this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+	}
+
+	void acquire() throws InterruptedException {
+		long waitNanos = reserve(System.nanoTime());
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	// nanos to wait for the permit
+	synchronized long reserve(long now) {
+		if (nextFree < now - burstNanos) {
+			nextFree = now - burstNanos;
+		}
+		long waitNanos = Math.max(0, nextFree - now);
+		nextFree += nanosPerPermit;
+		return waitNanos;
+	}
+}
@@ -0,0 +1,316 @@
+package com.learnkafka.store;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.serialization.LibraryEventBinaryFormat;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Current view of the library events -- the latest type and book per libraryEventId -- kept in an OffHeapStateMap
+ * and backed by the compacted changelog topic (topics.changelog), so it survives a restart of the in-memory DB.
+ * 1. LibraryEventsServiceImpl calls put() once an event is persisted (after the commit with listener.mode=eos),
+ *    the event goes into the map and to the changelog, key libraryEventId and value in LibraryEventBinaryFormat
+ * 2. on startup, before the listener containers start, the map is restored from the changelog -- every partition
+ *    is read from the beginning up to its end offset on its own consumer, stateStore.restoreParallelism at a time
+ * UPDATE events are validated with contains(), a hash probe on the heap index, the DB is only asked on a miss.
+ *
+ * The changelog is written after the DB commit and not in the same transaction, an event whose send failed is
+ * missing from the next restore and is validated against the DB again.
+ */
+@Component
+public class LibraryEventStateStore implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(LibraryEventStateStore.class);
+
+	@Value("${stateStore.enabled:false}")
+	boolean enabled;
+
+	@Value("${topics.changelog:library-events.changelog}")
+	String changelogTopic;
+
+	@Value("${stateStore.slabBytes:8388608}")
+	int slabBytes;
+
+	@Value("${stateStore.initialCapacity:65536}")
+	int initialCapacity;
+
+	@Value("${stateStore.restoreParallelism:4}")
+	int restoreParallelism;
+
+	@Value("${stateStore.restorePollTimeout:1s}")
+	Duration restorePollTimeout;
+
+	@Value("${stateStore.restoreTimeout:5m}")
+	Duration restoreTimeout;
+
+	private final KafkaTemplate<Integer, Object> kafkaTemplate;
+
+	private final ConsumerFactory<Object, Object> consumerFactory;
+
+	private final LibraryEventsMetrics libraryEventsMetrics;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private OffHeapStateMap map;
+
+	private volatile boolean running;
+
+	public LibraryEventStateStore(KafkaTemplate<Integer, Object> kafkaTemplate,
+			ConsumerFactory<Object, Object> consumerFactory, LibraryEventsMetrics libraryEventsMetrics) {
+		this.kafkaTemplate = kafkaTemplate;
+		this.consumerFactory = consumerFactory;
+		this.libraryEventsMetrics = libraryEventsMetrics;
+	}
+
+	@PostConstruct
+	void init() {
+		if (!enabled) {
+			return;
+		}
+		map = new OffHeapStateMap(slabBytes, initialCapacity);
+		libraryEventsMetrics.stateStore(this, LibraryEventStateStore::size, LibraryEventStateStore::allocatedBytes);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean contains(Integer libraryEventId) {
+		if (!enabled || libraryEventId == null) {
+			return false;
+		}
+		lock.readLock().lock();
+		try {
+			return map.containsKey(libraryEventId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Optional<LibraryEvent> find(Integer libraryEventId) {
+		if (!enabled || libraryEventId == null) {
+			return Optional.empty();
+		}
+		byte[] value;
+		lock.readLock().lock();
+		try {
+			value = map.get(libraryEventId);
+		} finally {
+			lock.readLock().unlock();
+		}
+		return Optional.ofNullable(value).map(LibraryEventBinaryFormat::decode);
+	}
+
+	/**
+	 * Records the persisted state of a library event. Inside a DB transaction (listener.mode=eos) the store and
+	 * the changelog are only updated once the transaction committed.
+	 */
+	public void put(LibraryEvent libraryEvent) {
+		if (!enabled || libraryEvent.getLibraryEventId() == null) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					write(libraryEvent.getLibraryEventId(), LibraryEventBinaryFormat.encode(libraryEvent));
+				}
+			});
+			return;
+		}
+		write(libraryEvent.getLibraryEventId(), LibraryEventBinaryFormat.encode(libraryEvent));
+	}
+
+	/**
+	 * Drops a library event the store knows about but the DB does not (e.g. an in-memory DB that was not restored
+	 * along with the changelog). The entry goes right away, the changelog gets a tombstone so a restore does not
+	 * bring it back.
+	 */
+	public void remove(Integer libraryEventId) {
+		if (!enabled || libraryEventId == null) {
+			return;
+		}
+		write(libraryEventId, null);
+	}
+
+	int size() {
+		lock.readLock().lock();
+		try {
+			return map.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	long allocatedBytes() {
+		lock.readLock().lock();
+		try {
+			return map.allocatedBytes();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// null value -- tombstone
+	private void write(int libraryEventId, byte[] value) {
+		apply(libraryEventId, value);
+		var record = new ProducerRecord<Integer, Object>(changelogTopic, libraryEventId, value);
+		record.headers().add(LibraryEventBinaryFormat.VALUE_FORMAT_HEADER,
+				LibraryEventBinaryFormat.BINARY.getBytes(StandardCharsets.UTF_8));
+		kafkaTemplate.send(record).whenComplete((result, e) -> {
+			if (e != null) {
+				log.warn("Could not write library event {} to {} : {}", libraryEventId, changelogTopic, e.getMessage());
+			}
+		});
+	}
+
+	// null value -- tombstone
+	private void apply(int libraryEventId, byte[] value) {
+		lock.writeLock().lock();
+		try {
+			if (value == null) {
+				map.remove(libraryEventId);
+			} else {
+				map.put(libraryEventId, value);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Runs before the listener containers (phase DEFAULT_PHASE of AbstractMessageListenerContainer) and blocks
+	 * until the restore is done, the first record a listener gets is validated against the restored view.
+	 */
+	@Override
+	public void start() {
+		if (enabled) {
+			restore();
+		}
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE - 200;
+	}
+
+	void restore() {
+		long startNanos = System.nanoTime();
+		List<TopicPartition> topicPartitions = new ArrayList<>();
+		List<Long> endOffsets = new ArrayList<>();
+		try (var consumer = createConsumer("metadata")) {
+			consumer.partitionsFor(changelogTopic).forEach(partitionInfo -> topicPartitions
+					.add(new TopicPartition(changelogTopic, partitionInfo.partition())));
+			var ends = consumer.endOffsets(topicPartitions);
+			topicPartitions.forEach(topicPartition -> endOffsets.add(ends.get(topicPartition)));
+		}
+		if (topicPartitions.isEmpty()) {
+			log.info("Changelog {} has no partitions yet, the state store starts empty", changelogTopic);
+			return;
+		}
+
+		var restored = new AtomicLong();
+		var threadNumber = new AtomicInteger();
+		ExecutorService restorers = Executors.newFixedThreadPool(Math.min(restoreParallelism, topicPartitions.size()),
+				runnable -> {
+					var thread = new Thread(runnable, "state-store-restore-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		try {
+			var restores = new CompletableFuture<?>[topicPartitions.size()];
+			for (int i = 0; i < topicPartitions.size(); i++) {
+				var topicPartition = topicPartitions.get(i);
+				long endOffset = endOffsets.get(i);
+				restores[i] = CompletableFuture.runAsync(
+						() -> restored.addAndGet(restorePartition(topicPartition, endOffset)), restorers);
+			}
+			CompletableFuture.allOf(restores).get(restoreTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("State store restore interrupted, {} library events restored", size());
+		} catch (Exception e) {
+			// a partial view is still correct for what it holds, the misses are looked up in the DB
+			log.warn("State store restore from {} did not complete, {} library events restored : {}", changelogTopic,
+					size(), e.getMessage());
+		} finally {
+			restorers.shutdownNow();
+		}
+		var restoreTime = Duration.ofNanos(System.nanoTime() - startNanos);
+		libraryEventsMetrics.stateStoreRestored(restoreTime);
+		log.info("State store restored {} library events from {} changelog records of {} partitions in {} ms", size(),
+				restored.get(), topicPartitions.size(), restoreTime.toMillis());
+	}
+
+	// changelog records read from the beginning of the partition up to endOffset
+	private long restorePartition(TopicPartition topicPartition, long endOffset) {
+		long records = 0;
+		try (var consumer = createConsumer(String.valueOf(topicPartition.partition()))) {
+			consumer.assign(List.of(topicPartition));
+			consumer.seekToBeginning(List.of(topicPartition));
+			// compaction leaves gaps in the offsets, the position tells when the end is reached
+			while (consumer.position(topicPartition) < endOffset) {
+				for (var record : consumer.poll(restorePollTimeout)) {
+					if (record.offset() >= endOffset) {
+						break;
+					}
+					if (record.key() != null) {
+						apply((Integer) record.key(), (byte[]) record.value());
+						records++;
+					}
+				}
+			}
+		}
+		return records;
+	}
+
+	// not part of any consumer group -- partitions are assigned, nothing is committed to kafka
+	private Consumer<Object, Object> createConsumer(String clientIdSuffix) {
+		var properties = new Properties();
+		properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+		// the changelog is written without transactions, no need to wait for the last stable offset
+		properties.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_uncommitted");
+		return consumerFactory.createConsumer("library-events-state-store", "state-store-", clientIdSuffix,
+				properties);
+	}
+}
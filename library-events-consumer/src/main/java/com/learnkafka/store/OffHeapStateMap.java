@@ -0,0 +1,209 @@
+package com.learnkafka.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * int key -> byte[] value map with the values kept outside the java heap, in direct ByteBuffer slabs of slabBytes.
+ * Values are appended to the last slab as [key:int][length:int][value bytes], the open addressing index
+ * (linear probing, keys[] + addresses[]) points at them with (slab << 32 | offset).
+ * An overwritten or removed value stays in its slab as garbage until there is more garbage than live data,
+ * then the live values are copied into fresh slabs and the old ones are left to the GC.
+ *
+ * Not thread safe, LibraryEventStateStore guards it with a read/write lock.
+ */
+class OffHeapStateMap {
+
+	private static final long EMPTY = -1L;
+
+	private static final int ENTRY_HEADER_BYTES = Integer.BYTES * 2;
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private final int slabBytes;
+
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+
+	// write position in the last slab
+	private int writeOffset;
+
+	private int[] keys;
+
+	private long[] addresses;
+
+	private int mask;
+
+	private int size;
+
+	private long liveBytes;
+
+	private long garbageBytes;
+
+	OffHeapStateMap(int slabBytes, int initialCapacity) {
+		this.slabBytes = slabBytes;
+		allocateIndex(Integer.highestOneBit(Math.max(16, (int) (initialCapacity / LOAD_FACTOR)) * 2 - 1));
+	}
+
+	int size() {
+		return size;
+	}
+
+	// off-heap memory held by the slabs
+	long allocatedBytes() {
+		return (long) slabs.size() * slabBytes;
+	}
+
+	long liveBytes() {
+		return liveBytes;
+	}
+
+	boolean containsKey(int key) {
+		return addresses[slot(key)] != EMPTY;
+	}
+
+	byte[] get(int key) {
+		long address = addresses[slot(key)];
+		if (address == EMPTY) {
+			return null;
+		}
+		var slab = slabs.get((int) (address >>> 32));
+		int offset = (int) address;
+		var value = new byte[slab.getInt(offset + Integer.BYTES)];
+		slab.get(offset + ENTRY_HEADER_BYTES, value);
+		return value;
+	}
+
+	void put(int key, byte[] value) {
+		if (ENTRY_HEADER_BYTES + value.length > slabBytes) {
+			throw new IllegalArgumentException(
+					"Value of " + value.length + " bytes does not fit into a slab of " + slabBytes + " bytes");
+		}
+		if (size + 1 > keys.length * LOAD_FACTOR) {
+			allocateIndex(keys.length * 2);
+		}
+		int slot = slot(key);
+		long previous = addresses[slot];
+		if (previous == EMPTY) {
+			keys[slot] = key;
+			size++;
+		} else {
+			release(previous);
+		}
+		addresses[slot] = append(key, value, 0, value.length);
+		liveBytes += ENTRY_HEADER_BYTES + value.length;
+		compactIfNeeded();
+	}
+
+	boolean remove(int key) {
+		int hole = slot(key);
+		long address = addresses[hole];
+		if (address == EMPTY) {
+			return false;
+		}
+		release(address);
+		size--;
+		// backward shift deletion -- entries probed past the hole move up, so lookups need no tombstones
+		int next = (hole + 1) & mask;
+		while (addresses[next] != EMPTY) {
+			int home = home(keys[next]);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				addresses[hole] = addresses[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		addresses[hole] = EMPTY;
+		compactIfNeeded();
+		return true;
+	}
+
+	void clear() {
+		slabs.clear();
+		writeOffset = 0;
+		size = 0;
+		allocateIndex(keys.length);
+		liveBytes = 0;
+		garbageBytes = 0;
+	}
+
+	private int slot(int key) {
+		int slot = home(key);
+		while (addresses[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// libraryEventIds are sequential, spread them over the table
+	private int home(int key) {
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private void release(long address) {
+		int length = ENTRY_HEADER_BYTES + slabs.get((int) (address >>> 32)).getInt((int) address + Integer.BYTES);
+		liveBytes -= length;
+		garbageBytes += length;
+	}
+
+	private long append(int key, byte[] value, int from, int length) {
+		if (slabs.isEmpty() || writeOffset + ENTRY_HEADER_BYTES + length > slabBytes) {
+			slabs.add(ByteBuffer.allocateDirect(slabBytes));
+			writeOffset = 0;
+		}
+		var slab = slabs.get(slabs.size() - 1);
+		slab.putInt(writeOffset, key);
+		slab.putInt(writeOffset + Integer.BYTES, length);
+		slab.put(writeOffset + ENTRY_HEADER_BYTES, value, from, length);
+		long address = ((long) (slabs.size() - 1) << 32) | writeOffset;
+		writeOffset += ENTRY_HEADER_BYTES + length;
+		return address;
+	}
+
+	private void compactIfNeeded() {
+		if (garbageBytes < slabBytes || garbageBytes < liveBytes) {
+			return;
+		}
+		List<ByteBuffer> old = new ArrayList<>(slabs);
+		slabs.clear();
+		writeOffset = 0;
+		var value = new byte[0];
+		for (int slot = 0; slot < addresses.length; slot++) {
+			long address = addresses[slot];
+			if (address == EMPTY) {
+				continue;
+			}
+			var slab = old.get((int) (address >>> 32));
+			int offset = (int) address;
+			int length = slab.getInt(offset + Integer.BYTES);
+			if (value.length < length) {
+				value = new byte[length];
+			}
+			slab.get(offset + ENTRY_HEADER_BYTES, value, 0, length);
+			addresses[slot] = append(keys[slot], value, 0, length);
+		}
+		garbageBytes = 0;
+	}
+
+	private void allocateIndex(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldAddresses = addresses;
+		keys = new int[capacity];
+		addresses = new long[capacity];
+		Arrays.fill(addresses, EMPTY);
+		mask = capacity - 1;
+		if (oldKeys == null || size == 0) {
+			return;
+		}
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldAddresses[slot] != EMPTY) {
+				int newSlot = slot(oldKeys[slot]);
+				keys[newSlot] = oldKeys[slot];
+				addresses[newSlot] = oldAddresses[slot];
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+-- Schema of the com.learnkafka.entity classes, runs on PostgreSQL and on H2 in PostgreSQL mode (h2file profile).
+-- Column names follow the Spring Boot naming strategy (camelCase -> snake_case); keep them in sync with the entities.
+
+-- LibraryEvent with the embedded Book, ids handed out 50 at a time (allocationSize of library_event_seq)
+create sequence library_event_seq start with 1 increment by 50;
+
+create table library_event (
+    library_event_id   integer      not null,
+    library_event_type varchar(255),
+    book_id            integer,
+    book_name          varchar(255),
+    book_author        varchar(255),
+    primary key (library_event_id)
+);
+
+-- keyset pages of /v1/libraryevents searched by author / book name
+create index idx_library_event_book_author on library_event (book_author, library_event_id);
+create index idx_library_event_book_name on library_event (book_name, library_event_id);
+
+-- FailureRecord, @GeneratedValue defaults to <table>_seq with an increment of 50
+create sequence failure_record_seq start with 1 increment by 50;
+
+create table failure_record (
+    book_id         integer not null,
+    topic           varchar(255),
+    key_value       integer,
+    -- the original record (base64 for binary values) and the exception message are not bounded
+    error_record    varchar,
+    partition       integer,
+    offset_value    bigint,
+    exception       varchar,
+    status          varchar(255),
+    value_format    varchar(255),
+    attempts        integer,
+    next_attempt_at timestamp(6) with time zone,
+    claimed_by      varchar(255),
+    claimed_until   timestamp(6) with time zone,
+    primary key (book_id)
+);
+
+-- findAllByStatus and the due RETRY rows of RetryScheduler (status = ? and next_attempt_at <= ?)
+create index idx_failure_record_status_next_attempt on failure_record (status, next_attempt_at);
+-- findAllByClaimedBy, the rows claimed by one RetryScheduler run
+create index idx_failure_record_claimed_by on failure_record (claimed_by);
+
+-- listener.mode=eos offsets, looked up by the primary key (findForUpdate) or its prefix (findAllByTopic)
+create table consumed_offset (
+    topic            varchar(255) not null,
+    partition_number integer      not null,
+    next_offset      bigint,
+    primary key (topic, partition_number)
+);
+
+create table replay_job (
+    id               varchar(255) not null,
+    topic            varchar(255),
+    exception_filter varchar(255),
+    key_filter       varchar(255),
+    rate_per_second  integer,
+    parallelism      integer,
+    status           varchar(255),
+    created_at       timestamp(6) with time zone,
+    updated_at       timestamp(6) with time zone,
+    primary key (id)
+);
+
+-- findAllByStatus, the RUNNING jobs paused at startup
+create index idx_replay_job_status on replay_job (status);
+
+create table replay_checkpoint (
+    job_id           varchar(255) not null,
+    partition_number integer      not null,
+    next_offset      bigint,
+    end_offset       bigint,
+    replayed         bigint,
+    skipped          bigint,
+    failed           bigint,
+    primary key (job_id, partition_number)
+);
@@ -0,0 +1,4 @@
+-- bookName prefix search (like 'prefix%') can only use a btree index under the C collation or with the
+-- pattern operator class -- replaces the plain (book_name, library_event_id) index of V1 on PostgreSQL
+drop index idx_library_event_book_name;
+create index idx_library_event_book_name on library_event (book_name varchar_pattern_ops, library_event_id);
@@ -49,7 +49,8 @@ import com.learnkafka.service.LibraryEventsService;
         , "library-events.DLT"
 })
 @TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
-		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false"})
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=2"})
 public class LibraryEventsConsumerIntegrationTest {
 	
 	@Value("${topics.retry}")
@@ -149,7 +150,6 @@ public class LibraryEventsConsumerIntegrationTest {
 		//given
         String json = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
         LibraryEvent libraryEvent = objectMapper.readValue(json, LibraryEvent.class);
-        libraryEvent.getBook().setLibraryEvent(libraryEvent);
         libraryEventsRepository.save(libraryEvent);
         
         //publish the update LibraryEvent
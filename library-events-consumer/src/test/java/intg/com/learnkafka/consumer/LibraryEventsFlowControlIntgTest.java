@@ -0,0 +1,122 @@
+package com.learnkafka.consumer;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.flow.PersistFlowController;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A repository slowed down to 25ms per save behind a single partition / listener thread: the records of one poll
+ * take far longer than max.poll.interval.ms to persist, PersistFlowController has to keep the consumer polling
+ * (paused) in between so it never leaves the group.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EmbeddedKafka(partitions = 1, topics = { "library-events", "library-events.RETRY", "library-events.DLT" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=1",
+		"listener.concurrency=1", "spring.kafka.consumer.max-poll-records=500",
+		"spring.kafka.consumer.properties[max.poll.interval.ms]=4000", "spring.kafka.listener.poll-timeout=200",
+		"flowControl.enabled=true", "flowControl.targetLatency=10ms", "flowControl.intervalMs=500",
+		"flowControl.initialRate=200" })
+class LibraryEventsFlowControlIntgTest {
+
+	private static final int EVENTS = 300;
+
+	private static final long SAVE_MILLIS = 25;
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	private KafkaTemplate<Integer, String> kafkaTemplate;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry endpointRegistry;
+
+	@SpyBean
+	private LibraryEventsRepository libraryEventsRepositorySpy;
+
+	@Autowired
+	private PersistFlowController persistFlowController;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private MessageListenerContainer container;
+
+	@BeforeEach
+	void setUp() {
+		container = endpointRegistry.getListenerContainers().stream()
+				.filter(listenerContainer -> Objects.equals(listenerContainer.getGroupId(),
+						"library-events-listener-group"))
+				.findFirst().orElseThrow();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+		doAnswer(invocation -> {
+			TimeUnit.MILLISECONDS.sleep(SAVE_MILLIS);
+			return invocation.callRealMethod();
+		}).when(libraryEventsRepositorySpy).save(any(LibraryEvent.class));
+	}
+
+	@AfterEach
+	void tearDown() {
+		// the in-memory H2 database is shared with the other integration tests
+		libraryEventsRepositorySpy.deleteAll();
+	}
+
+	@Test
+	void slowRepositoryDoesNotCauseRebalances() throws Exception {
+		// given
+		double rebalancesBefore = rebalances();
+
+		// when -- EVENTS * SAVE_MILLIS is about twice max.poll.interval.ms
+		for (int i = 0; i < EVENTS; i++) {
+			kafkaTemplate.sendDefault(null, "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":"
+					+ i + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+		}
+		kafkaTemplate.flush();
+
+		// then
+		await().atMost(90, TimeUnit.SECONDS).pollInterval(200, TimeUnit.MILLISECONDS)
+				.untilAsserted(() -> assertEquals(EVENTS, libraryEventsRepositorySpy.count()));
+		assertEquals(rebalancesBefore, rebalances());
+		assertTrue(meterRegistry.get("library.events.flow.pauses").counters().stream()
+				.mapToDouble(counter -> counter.count()).sum() > 0);
+		assertTrue(persistFlowController.getRate() < 200);
+	}
+
+	// completed rebalances of the group as seen by the container's consumer -- the initial join counts as one,
+	// a consumer that exceeded max.poll.interval.ms and rejoined adds another
+	private double rebalances() {
+		return container.metrics().values().stream()
+				.flatMap(metrics -> metrics.entrySet().stream())
+				.filter(metric -> metric.getKey().name().equals("rebalance-total")
+						&& metric.getKey().group().equals("consumer-coordinator-metrics"))
+				.mapToDouble(metric -> ((Number) metric.getValue().metricValue()).doubleValue())
+				.sum();
+	}
+}
@@ -0,0 +1,132 @@
+package com.learnkafka.consumer;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.service.FailureService;
+import com.learnkafka.service.LibraryEventsServiceImpl;
+
+/**
+ * listener.mode=keyed on a single partition with 4 lanes. Keys 1, 2, 3, 4 and 6 map to the lanes 1, 2, 3, 0 and 2:
+ * - key 1 (offset 0) is held on its lane, the records behind it complete first, out of order
+ * - key 2 fails, and so does FailureService for it -- the lane must still acknowledge it and go on with key 6
+ * The committed offset has to stay behind offset 0 while key 1 is held and reach the end once it is released.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EmbeddedKafka(partitions = 1, topics = { "library-events", "library-events.RETRY", "library-events.DLT" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=1",
+		"listener.mode=keyed", "listener.concurrency=1", "keyed.lanes=4" })
+class LibraryEventsKeyedConsumerIntgTest {
+
+	private static final String GROUP = "library-events-listener-group";
+
+	private static final int[] KEYS = { 1, 2, 3, 4, 6 };
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	private KafkaTemplate<Integer, String> kafkaTemplate;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry endpointRegistry;
+
+	@SpyBean
+	private LibraryEventsServiceImpl libraryEventsServiceSpy;
+
+	@SpyBean
+	private FailureService failureServiceSpy;
+
+	@Autowired
+	private LibraryEventsRepository libraryEventsRepository;
+
+	private final CountDownLatch releaseKeyOne = new CountDownLatch(1);
+
+	@BeforeEach
+	void setUp() throws Exception {
+		var container = endpointRegistry.getListenerContainers().stream()
+				.filter(listenerContainer -> Objects.equals(listenerContainer.getGroupId(), GROUP))
+				.findFirst().orElseThrow();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+		doAnswer(invocation -> {
+			ConsumerRecord<Integer, byte[]> consumerRecord = invocation.getArgument(0);
+			if (consumerRecord.key() == 1) {
+				releaseKeyOne.await(30, TimeUnit.SECONDS);
+			} else if (consumerRecord.key() == 2) {
+				throw new RecoverableDataAccessException("Temporary Network Issue");
+			}
+			return invocation.callRealMethod();
+		}).when(libraryEventsServiceSpy).processLibraryEvent(any());
+		doThrow(new IllegalStateException("failure journal unavailable")).when(failureServiceSpy)
+				.saveFailedRecord(argThat(consumerRecord -> consumerRecord.key() == 2), any(), anyString());
+	}
+
+	@AfterEach
+	void tearDown() {
+		releaseKeyOne.countDown();
+		libraryEventsRepository.deleteAll();
+	}
+
+	@Test
+	void watermarkWaitsForTheOldestRecordAndFailedRecordsAreAcknowledged() throws Exception {
+		// given
+		for (int key : KEYS) {
+			kafkaTemplate.sendDefault(key, "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":"
+					+ key + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}").get();
+		}
+
+		// when -- keys 3, 4 and 6 are persisted while key 1 is held, key 2 is acknowledged after both failures
+		await().atMost(Duration.ofSeconds(15)).untilAsserted(() -> assertEquals(3, libraryEventsRepository.count()));
+		verify(failureServiceSpy).saveFailedRecord(argThat(consumerRecord -> consumerRecord.key() == 2),
+				any(RecoverableDataAccessException.class), eq(LibraryEventStatus.RETRY.name()));
+
+		// then -- offset 0 is not acknowledged, nothing behind it may be committed
+		OffsetAndMetadata committed = committedOffset();
+		assertTrue(committed == null || committed.offset() == 0, "committed past the held record: " + committed);
+
+		releaseKeyOne.countDown();
+		await().atMost(Duration.ofSeconds(15)).untilAsserted(() -> {
+			OffsetAndMetadata offset = committedOffset();
+			assertTrue(offset != null && offset.offset() == KEYS.length, "committed offset " + offset);
+		});
+		assertEquals(4, libraryEventsRepository.count());
+	}
+
+	private OffsetAndMetadata committedOffset() throws Exception {
+		return KafkaTestUtils.getCurrentOffset(embeddedKafkaBroker.getBrokersAsString(), GROUP, "library-events", 0);
+	}
+}
@@ -0,0 +1,94 @@
+package com.learnkafka.consumer;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.service.LibraryEventsService;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EmbeddedKafka(topics = { "library-events", "library-events.RETRY", "library-events.DLT" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=2",
+		// tiers library-events-retry-500 and library-events-retry-1000
+		"retryTopics.enabled=true", "retryTopics.initialDelay=500ms", "retryTopics.multiplier=2",
+		"retryTopics.maxDelay=2s", "retryTopics.attempts=3" })
+class LibraryEventsRetryTopicsIntgTest {
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	private KafkaTemplate<Integer, String> kafkaTemplate;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry endpointRegistry;
+
+	@SpyBean
+	private LibraryEventsService libraryEventsServiceSpy;
+
+	@Autowired
+	private LibraryEventsRepository libraryEventsRepository;
+
+	@Autowired
+	private FailureRecordRepository failureRecordRepository;
+
+	@BeforeEach
+	void setUp() {
+		var container = endpointRegistry.getListenerContainers().stream()
+				.filter(listenerContainer -> Objects.equals(listenerContainer.getGroupId(),
+						"library-events-listener-group"))
+				.findFirst().orElseThrow();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+	}
+
+	@AfterEach
+	void tearDown() {
+		// the in-memory H2 database is shared with the other integration tests
+		libraryEventsRepository.deleteAll();
+		failureRecordRepository.deleteAll();
+	}
+
+	@Test
+	void recoverableFailureDoesNotHoldBackTheNextRecordOfThePartition() throws Exception {
+		// given -- 999 is the temporary network error scenario, both records go to the same partition
+		String failing = "{\"libraryEventId\":999,\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+		String healthy = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":457,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+		kafkaTemplate.sendDefault(999, failing).get();
+		kafkaTemplate.sendDefault(999, healthy).get();
+
+		// then -- the healthy record is stored while the failing one is still in the retry tiers
+		await().atMost(Duration.ofSeconds(15)).until(() -> libraryEventsRepository.count() == 1);
+		assertEquals(0, failureRecordRepository.count());
+
+		// after the last tier the DLT handler stores it for the RetryScheduler
+		await().atMost(Duration.ofSeconds(15)).until(() -> failureRecordRepository.count() == 1);
+		failureRecordRepository.findAll()
+				.forEach(failureRecord -> assertEquals(LibraryEventStatus.RETRY.name(), failureRecord.getStatus()));
+		// main topic + two tiers for the failing record, once for the healthy one
+		verify(libraryEventsServiceSpy, times(4)).processLibraryEvent(isA(ConsumerRecord.class));
+	}
+}
@@ -0,0 +1,104 @@
+package com.learnkafka.load;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * Kafka ConsumerInterceptor used by {@link LibraryEventsLoadTest}. It is registered through
+ * spring.kafka.consumer.properties[interceptor.classes], so the kafka client creates one instance per consumer thread.
+ *
+ * onConsume remembers the produce timestamp header of every polled record, onCommit records
+ * (commit time - produce time) into one shared HdrHistogram for every record the committed offsets cover --
+ * i.e. the latency is measured at commit, once the record is persisted and will not be redelivered.
+ */
+public class EndToEndLatencyInterceptor implements ConsumerInterceptor<Integer, byte[]> {
+
+	public static final String PRODUCE_TIMESTAMP_HEADER = "produce-ts";
+
+	// state shared by all consumer threads, read by the load test once the run is over
+	static final Histogram latencyMicros = new ConcurrentHistogram(3);
+
+	static final Map<Integer, LongAdder> committedPerPartition = new ConcurrentHashMap<>();
+
+	static final Map<String, LongAdder> committedPerThread = new ConcurrentHashMap<>();
+
+	static final LongAdder committed = new LongAdder();
+
+	static final AtomicLong lastCommitMicros = new AtomicLong();
+
+	// polled but not yet committed records of this consumer: partition -> (offset, produce timestamp) pairs
+	private final Map<TopicPartition, ArrayDeque<long[]>> pending = new HashMap<>();
+
+	static void reset() {
+		latencyMicros.reset();
+		committedPerPartition.clear();
+		committedPerThread.clear();
+		committed.reset();
+		lastCommitMicros.set(0);
+	}
+
+	static long nowMicros() {
+		return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+	}
+
+	@Override
+	public ConsumerRecords<Integer, byte[]> onConsume(ConsumerRecords<Integer, byte[]> records) {
+		for (ConsumerRecord<Integer, byte[]> consumerRecord : records) {
+			Header header = consumerRecord.headers().lastHeader(PRODUCE_TIMESTAMP_HEADER);
+			if (header != null) {
+				var topicPartition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+				pending.computeIfAbsent(topicPartition, tp -> new ArrayDeque<>())
+						.add(new long[] { consumerRecord.offset(), ByteBuffer.wrap(header.value()).getLong() });
+			}
+		}
+		return records;
+	}
+
+	@Override
+	public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+		long now = nowMicros();
+		String thread = Thread.currentThread().getName();
+		offsets.forEach((topicPartition, offsetAndMetadata) -> {
+			var polled = pending.get(topicPartition);
+			if (polled == null) {
+				return;
+			}
+			long count = 0;
+			// the committed offset is the next offset to read, everything below it is done
+			while (!polled.isEmpty() && polled.peek()[0] < offsetAndMetadata.offset()) {
+				latencyMicros.recordValue(Math.max(0, now - polled.poll()[1]));
+				count++;
+			}
+			if (count > 0) {
+				committedPerPartition.computeIfAbsent(topicPartition.partition(), p -> new LongAdder()).add(count);
+				committedPerThread.computeIfAbsent(thread, t -> new LongAdder()).add(count);
+				committed.add(count);
+				lastCommitMicros.accumulateAndGet(now, Math::max);
+			}
+		});
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs) {
+	}
+}
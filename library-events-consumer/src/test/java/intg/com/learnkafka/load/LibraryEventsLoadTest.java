@@ -0,0 +1,146 @@
+package com.learnkafka.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * End to end load harness: drives library-events at a fixed rate into the embedded broker and reports
+ * throughput per partition / per consumer thread and the produce -> commit latency percentiles.
+ *
+ * Not part of the regular build, run it with
+ *   gradlew loadTest -Dload.rate=2000 -Dload.events=50000 -Dload.payloadSize=512
+ *
+ * Same run against the datastore profiles, to compare their throughput with the in-memory H2 of local:
+ *   gradlew loadTest -Dload.rate=0 -Dspring.profiles.active=local,h2file   (or local,postgres with DB_URL etc.)
+ *
+ * The events are sent the way LibraryEventsProducer sends them (JSON value, libraryEventId as key)
+ * with an extra produce timestamp header, so the numbers cover broker -> LibraryEventsConsumer -> DB.
+ */
+@Tag("load")
+@SpringBootTest
+@EmbeddedKafka(partitions = 3, topics = { "library-events", "library-events.RETRY", "library-events.DLT" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=3",
+		"spring.kafka.consumer.properties[interceptor.classes]=com.learnkafka.load.EndToEndLatencyInterceptor" })
+public class LibraryEventsLoadTest {
+
+	// events per second, 0 sends as fast as the producer allows
+	@Value("${load.rate:1000}")
+	private int rate;
+
+	@Value("${load.events:10000}")
+	private int events;
+
+	// approximate size of the JSON value in bytes, the book name is padded to reach it (~120 bytes without it)
+	@Value("${load.payloadSize:200}")
+	private int payloadSize;
+
+	@Value("${load.timeoutSeconds:300}")
+	private long timeoutSeconds;
+
+	@Value("${spring.datasource.url}")
+	private String datasourceUrl;
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	private KafkaTemplate<Integer, String> kafkaTemplate;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry endpointRegistry;
+
+	@BeforeEach
+	void setUp() {
+		var container = endpointRegistry.getListenerContainers().stream()
+				.filter(listenerContainer -> Objects.equals(listenerContainer.getGroupId(), "library-events-listener-group"))
+				.findFirst().orElseThrow();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+		EndToEndLatencyInterceptor.reset();
+	}
+
+	@Test
+	void newLibraryEventsEndToEnd() throws Exception {
+		String bookName = "K".repeat(Math.max(1, payloadSize - 120));
+		long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+
+		long startMicros = EndToEndLatencyInterceptor.nowMicros();
+		long nextSend = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			if (intervalNanos > 0) {
+				// pace against the schedule, not the previous send, so a slow send does not lower the rate
+				long wait = nextSend - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				nextSend += intervalNanos;
+			}
+			ProducerRecord<Integer, String> producerRecord = new ProducerRecord<>("library-events", i,
+					newLibraryEventJson(i, bookName));
+			producerRecord.headers().add(EndToEndLatencyInterceptor.PRODUCE_TIMESTAMP_HEADER,
+					ByteBuffer.allocate(Long.BYTES).putLong(EndToEndLatencyInterceptor.nowMicros()).array());
+			kafkaTemplate.send(producerRecord);
+		}
+		kafkaTemplate.flush();
+		long sentMicros = EndToEndLatencyInterceptor.nowMicros();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+		while (EndToEndLatencyInterceptor.committed.sum() < events && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(100);
+		}
+
+		printReport(startMicros, sentMicros);
+		assertEquals(events, EndToEndLatencyInterceptor.committed.sum());
+	}
+
+	private void printReport(long startMicros, long sentMicros) {
+		long endMicros = Math.max(EndToEndLatencyInterceptor.lastCommitMicros.get(), startMicros + 1);
+		double seconds = (endMicros - startMicros) / 1_000_000.0;
+		var latency = EndToEndLatencyInterceptor.latencyMicros;
+
+		var report = new StringBuilder("\n==== library-events load test ====\n");
+		report.append(String.format("target rate %d events/s, %d events, payload ~%d bytes%n", rate, events, payloadSize));
+		report.append(String.format("datastore %s%n", datasourceUrl));
+		report.append(String.format("sent in %.2fs, committed %d in %.2fs -> %.0f events/s%n",
+				(sentMicros - startMicros) / 1_000_000.0, EndToEndLatencyInterceptor.committed.sum(), seconds,
+				EndToEndLatencyInterceptor.committed.sum() / seconds));
+		report.append(String.format("produce -> commit latency (ms): p50 %.2f  p99 %.2f  p999 %.2f  max %.2f%n",
+				latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+				latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0));
+		report.append("per partition:\n");
+		EndToEndLatencyInterceptor.committedPerPartition.entrySet().stream().sorted(Map.Entry.comparingByKey())
+				.forEach(entry -> report.append(String.format("  partition %d: %d events, %.0f events/s%n",
+						entry.getKey(), entry.getValue().sum(), entry.getValue().sum() / seconds)));
+		report.append("per consumer thread:\n");
+		EndToEndLatencyInterceptor.committedPerThread.entrySet().stream().sorted(Map.Entry.comparingByKey())
+				.forEach(entry -> report.append(String.format("  %s: %d events, %.0f events/s%n",
+						entry.getKey(), entry.getValue().sum(), entry.getValue().sum() / seconds)));
+		System.out.println(report);
+	}
+
+	// a distinct bookId per event, otherwise every NEW event rewrites the same book row
+	private static String newLibraryEventJson(int bookId, String bookName) {
+		return "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":" + bookId
+				+ ",\"bookName\":\"" + bookName + "\",\"bookAuthor\":\"Dilip\"}}";
+	}
+}
@@ -0,0 +1,213 @@
+package com.learnkafka.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import com.learnkafka.cache.LibraryEventViewCache;
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read load harness for GET /v1/libraryevents/{id}: reader threads request random ids of a seeded set, first on
+ * an idle consumer, then while UPDATE events for the same ids are consumed and invalidate the near-cache entries.
+ * Reports the HTTP latency percentiles of both phases and the cache hit ratio.
+ *
+ * Not part of the regular build, run it with
+ *   gradlew loadTest -Dload.read.events=5000 -Dload.read.readers=16 -Dload.read.updateRate=500
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EmbeddedKafka(partitions = 3, topics = { "library-events", "library-events.RETRY", "library-events.DLT" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=3" })
+public class LibraryEventsReadLoadTest {
+
+	@Value("${load.read.events:2000}")
+	private int events;
+
+	@Value("${load.read.readers:8}")
+	private int readers;
+
+	@Value("${load.read.phaseSeconds:15}")
+	private int phaseSeconds;
+
+	// UPDATE events per second consumed during the second phase
+	@Value("${load.read.updateRate:200}")
+	private int updateRate;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	private KafkaTemplate<Integer, String> kafkaTemplate;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry endpointRegistry;
+
+	@Autowired
+	private LibraryEventsRepository libraryEventsRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	private final List<LibraryEvent> seeded = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		var container = endpointRegistry.getListenerContainers().stream()
+				.filter(listenerContainer -> Objects.equals(listenerContainer.getGroupId(), "library-events-listener-group"))
+				.findFirst().orElseThrow();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+
+		for (int i = 0; i < events; i++) {
+			var book = Book.builder().bookId(i).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build();
+			var libraryEvent = LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).book(book).build();
+			seeded.add(libraryEvent);
+		}
+		libraryEventsRepository.saveAll(seeded);
+	}
+
+	@Test
+	void cachedReadsWhileTheConsumerIsWriting() throws Exception {
+		// warm up -- every id read once, i.e. cached
+		for (var libraryEvent : seeded) {
+			assertEquals(200, get(libraryEvent.getLibraryEventId()));
+		}
+
+		var idle = readPhase(false);
+		double hitsBefore = cacheGets("hit");
+		double missesBefore = cacheGets("miss");
+		var writing = readPhase(true);
+		double hits = cacheGets("hit") - hitsBefore;
+		double misses = cacheGets("miss") - missesBefore;
+
+		var report = new StringBuilder("\n==== library-events read load test ====\n");
+		report.append(String.format("%d events, %d readers, %ds per phase, %d UPDATE events/s while writing%n", events,
+				readers, phaseSeconds, updateRate));
+		report.append(line("idle consumer", idle));
+		report.append(line("writing consumer", writing));
+		report.append(String.format("cache hit ratio while writing: %.1f%%%n", 100 * hits / Math.max(1, hits + misses)));
+		System.out.println(report);
+		assertEquals(0, idle.errors().sum() + writing.errors().sum());
+	}
+
+	private record PhaseResult(Histogram latencyMicros, LongAdder errors, long updates) {
+	}
+
+	private PhaseResult readPhase(boolean writing) throws Exception {
+		var latencyMicros = new ConcurrentHistogram(3);
+		var errors = new LongAdder();
+		var running = new AtomicBoolean(true);
+		long updates = 0;
+		try (var executor = Executors.newFixedThreadPool(readers)) {
+			for (int reader = 0; reader < readers; reader++) {
+				executor.submit(() -> {
+					while (running.get()) {
+						var libraryEvent = seeded.get(ThreadLocalRandom.current().nextInt(seeded.size()));
+						long start = System.nanoTime();
+						try {
+							if (get(libraryEvent.getLibraryEventId()) != 200) {
+								errors.increment();
+							}
+						} catch (Exception e) {
+							errors.increment();
+						}
+						latencyMicros.recordValue((System.nanoTime() - start) / 1000);
+					}
+				});
+			}
+			long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(phaseSeconds);
+			if (writing) {
+				updates = sendUpdates(end);
+			} else {
+				LockSupport.parkNanos(end - System.nanoTime());
+			}
+			running.set(false);
+		}
+		return new PhaseResult(latencyMicros, errors, updates);
+	}
+
+	// UPDATE events for random seeded ids at updateRate until end
+	private long sendUpdates(long end) {
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, updateRate);
+		long nextSend = System.nanoTime();
+		long sent = 0;
+		while (System.nanoTime() < end) {
+			long wait = nextSend - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			nextSend += intervalNanos;
+			var libraryEvent = seeded.get(ThreadLocalRandom.current().nextInt(seeded.size()));
+			kafkaTemplate.send("library-events", libraryEvent.getLibraryEventId(),
+					updateLibraryEventJson(libraryEvent, sent));
+			sent++;
+		}
+		kafkaTemplate.flush();
+		return sent;
+	}
+
+	private int get(Integer libraryEventId) throws Exception {
+		var uri = URI.create("http://localhost:" + port + "/v1/libraryevents/" + libraryEventId);
+		var request = HttpRequest.newBuilder(uri).GET().build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private double cacheGets(String result) {
+		return meterRegistry.get("cache.gets").tag("cache", LibraryEventViewCache.CACHE_NAME).tag("result", result)
+				.functionCounter().count();
+	}
+
+	private String line(String phase, PhaseResult result) {
+		var latency = result.latencyMicros();
+		return String.format("%-16s %8d reads, %6d updates | latency (ms): p50 %.2f  p99 %.2f  p999 %.2f  max %.2f%n",
+				phase, latency.getTotalCount(), result.updates(), latency.getValueAtPercentile(50) / 1000.0,
+				latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+				latency.getMaxValue() / 1000.0);
+	}
+
+	private static String updateLibraryEventJson(LibraryEvent libraryEvent, long version) {
+		return "{\"libraryEventId\":" + libraryEvent.getLibraryEventId()
+				+ ",\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":" + libraryEvent.getBook().getBookId()
+				+ ",\"bookName\":\"Kafka Using Spring Boot v" + version + "\",\"bookAuthor\":\"Dilip\"}}";
+	}
+}
@@ -0,0 +1,147 @@
+package com.learnkafka.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.learnkafka.config.ConnectionPoolConfig;
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.ConsumedOffset;
+import com.learnkafka.entity.FailureRecord;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.entity.ReplayCheckpoint;
+import com.learnkafka.entity.ReplayJob;
+import com.learnkafka.entity.ReplayJobStatus;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The h2file profile -- a fresh file backed H2 in PostgreSQL mode whose schema comes only from the Flyway
+ * migrations (ddl-auto none), so every repository query running here runs on the migrated schema.
+ */
+@DataJpaTest(properties = "h2file.path=./build/h2/flyway-schema-test-${random.uuid}")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles({ "local", "h2file" })
+@Import(ConnectionPoolConfig.class)
+class FlywaySchemaH2FileTest {
+
+	@Autowired
+	private Flyway flyway;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private TestEntityManager testEntityManager;
+
+	@Autowired
+	private LibraryEventsRepository libraryEventsRepository;
+
+	@Autowired
+	private FailureRecordRepository failureRecordRepository;
+
+	@Autowired
+	private ConsumedOffsetRepository consumedOffsetRepository;
+
+	@Autowired
+	private ReplayJobRepository replayJobRepository;
+
+	@Autowired
+	private ReplayCheckpointRepository replayCheckpointRepository;
+
+	@Test
+	void migrationsAreApplied() {
+		assertTrue(flyway.info().applied().length > 0);
+		assertEquals(0, flyway.info().pending().length);
+	}
+
+	@Test
+	void poolIsSizedToTheListenerThreads() {
+		// 3 partitions of the local profile + 4 retryScheduler.workers + the FailureJournal writer + headroom 2
+		var hikari = (HikariDataSource) dataSource;
+		assertEquals(10, hikari.getMaximumPoolSize());
+		assertEquals(10, hikari.getMinimumIdle());
+	}
+
+	@Test
+	void libraryEvents() {
+		// given
+		var book = Book.builder().bookId(456).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build();
+		var saved = libraryEventsRepository
+				.save(LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).book(book).build());
+
+		// when
+		int updated = libraryEventsRepository.updateBook(456, "Kafka Using Spring Boot 2.X", "Dilip",
+				saved.getLibraryEventId());
+		// another book for the same library event matches no row
+		int bookChanged = libraryEventsRepository.updateBook(457, "Kafka Using Spring Boot 3.X", "Dilip",
+				saved.getLibraryEventId());
+		var page = libraryEventsRepository.findPageByBookNamePrefixAfter("Kafka", 0, PageRequest.of(0, 10));
+
+		// then
+		assertEquals(1, updated);
+		assertEquals(0, bookChanged);
+		assertEquals(1, page.size());
+		assertEquals("Kafka Using Spring Boot 2.X", page.get(0).book().bookName());
+		assertEquals(LibraryEventType.NEW,
+				libraryEventsRepository.findViewById(saved.getLibraryEventId()).orElseThrow().libraryEventType());
+	}
+
+	@Test
+	void failureRecords() {
+		// given
+		var now = Instant.now();
+		var failureRecord = failureRecordRepository.save(FailureRecord.builder().topic("library-events").key_value(1)
+				.errorRecord("x".repeat(2000)).partition(0).offset_value(42L).exception("java.lang.RuntimeException")
+				.status(LibraryEventStatus.RETRY.name()).attempts(0).nextAttemptAt(now.minusSeconds(1)).build());
+		testEntityManager.flush();
+
+		// when
+		var due = failureRecordRepository.findDueIds(LibraryEventStatus.RETRY.name(), now, PageRequest.of(0, 10));
+		int claimed = failureRecordRepository.claim(due, LibraryEventStatus.RETRY.name(), "run-1",
+				now.plus(Duration.ofMinutes(2)), now);
+		testEntityManager.clear();
+
+		// then
+		assertEquals(List.of(failureRecord.getBookId()), due);
+		assertEquals(1, claimed);
+		assertEquals(1, failureRecordRepository.findAllByClaimedBy("run-1").size());
+		assertEquals(2000, failureRecordRepository.findAllByStatus(LibraryEventStatus.RETRY.name()).get(0)
+				.getErrorRecord().length());
+	}
+
+	@Test
+	void offsetsAndReplays() {
+		// given
+		consumedOffsetRepository.save(ConsumedOffset.builder().topic("library-events").partitionNumber(0)
+				.nextOffset(7L).build());
+		replayJobRepository.save(ReplayJob.builder().id("job-1").topic("library-events.DLT").parallelism(1)
+				.status(ReplayJobStatus.RUNNING.name()).createdAt(Instant.now()).updatedAt(Instant.now()).build());
+		replayCheckpointRepository.save(ReplayCheckpoint.builder().jobId("job-1").partitionNumber(0).nextOffset(0L)
+				.endOffset(10L).replayed(0L).skipped(0L).failed(0L).build());
+		testEntityManager.flush();
+		testEntityManager.clear();
+
+		// when / then
+		assertEquals(7L, consumedOffsetRepository.findForUpdate("library-events", 0).orElseThrow().getNextOffset());
+		assertEquals(1, replayJobRepository.findAllByStatus(ReplayJobStatus.RUNNING.name()).size());
+		assertEquals(10L, replayCheckpointRepository.findAllByJobIdOrderByPartitionNumber("job-1").get(0)
+				.getEndOffset());
+	}
+}
@@ -0,0 +1,108 @@
+package com.learnkafka.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Counts the JDBC statements Hibernate prepares per library event (hibernate.generate_statistics), for the
+ * embedded Book mapping with the pooled library_event_seq:
+ * saveAll of n events takes n / allocationSize sequence calls plus n / batch_size insert batches, a read of one
+ * event or of a page is a single select.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class LibraryEventsRepositoryStatementsTest {
+
+	private static final int EVENTS = 500;
+
+	@Autowired
+	private LibraryEventsRepository libraryEventsRepository;
+
+	@Autowired
+	private TestEntityManager testEntityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void saveAllIsBatched() {
+		// when
+		libraryEventsRepository.saveAll(libraryEvents());
+		testEntityManager.flush();
+
+		// then
+		long statements = statistics.getPrepareStatementCount();
+		System.out.printf("saveAll of %d events: %d statements, %.3f per event, %d entities inserted%n", EVENTS,
+				statements, (double) statements / EVENTS, statistics.getEntityInsertCount());
+		assertEquals(EVENTS, statistics.getEntityInsertCount());
+		// the @OneToOne mapping took an insert for each of the two rows per event, no batching across tables
+		assertTrue(statements <= EVENTS / 10, "statements: " + statements);
+	}
+
+	@Test
+	void readsAreOneSelect() {
+		// given
+		var saved = libraryEventsRepository.saveAll(libraryEvents());
+		testEntityManager.flush();
+		testEntityManager.clear();
+		var libraryEventId = saved.get(0).getLibraryEventId();
+
+		// when
+		statistics.clear();
+		var view = libraryEventsRepository.findViewById(libraryEventId).orElseThrow();
+		long findViewStatements = statistics.getPrepareStatementCount();
+
+		statistics.clear();
+		var libraryEvent = libraryEventsRepository.findById(libraryEventId).orElseThrow();
+		long findEntityStatements = statistics.getPrepareStatementCount();
+
+		statistics.clear();
+		var page = libraryEventsRepository.findPageByBookAuthorAfter("Dilip", 0, PageRequest.of(0, 100));
+		long pageStatements = statistics.getPrepareStatementCount();
+
+		// then
+		System.out.printf("findViewById: %d, findById: %d, page of %d: %d statements%n", findViewStatements,
+				findEntityStatements, page.size(), pageStatements);
+		assertEquals("Kafka Using Spring Boot", view.book().bookName());
+		assertEquals("Kafka Using Spring Boot", libraryEvent.getBook().getBookName());
+		assertEquals(100, page.size());
+		assertEquals(1, findViewStatements);
+		assertEquals(1, findEntityStatements);
+		assertEquals(1, pageStatements);
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	private static List<LibraryEvent> libraryEvents() {
+		var libraryEvents = new ArrayList<LibraryEvent>();
+		for (int i = 0; i < EVENTS; i++) {
+			var book = Book.builder().bookId(i).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build();
+			libraryEvents.add(LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).book(book).build());
+		}
+		return libraryEvents;
+	}
+}
@@ -0,0 +1,80 @@
+package com.learnkafka.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doThrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+/**
+ * listener.mode=batch persists a poll in one transaction -- when saveAll fails after an UPDATE statement of the same
+ * poll the UPDATE is rolled back with it, the error handler gets the whole poll back and nothing of it is stored.
+ */
+@SpringBootTest
+@EmbeddedKafka(topics = { "library-events", "library-events.RETRY", "library-events.DLT" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}", "retryListener.startup=false",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}", "topics.layout.partitions=1",
+		"upsert.enabled=true" })
+class LibraryEventsBatchTransactionIntgTest {
+
+	@Autowired
+	private LibraryEventsService libraryEventsService;
+
+	@SpyBean
+	private LibraryEventsRepository libraryEventsRepositorySpy;
+
+	@AfterEach
+	void tearDown() {
+		libraryEventsRepositorySpy.deleteAll();
+	}
+
+	@Test
+	void updateIsRolledBackWhenSaveAllFails() {
+		// given
+		var stored = libraryEventsRepositorySpy.save(LibraryEvent.builder().libraryEventType(LibraryEventType.NEW)
+				.book(Book.builder().bookId(456).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build())
+				.build());
+		doThrow(new DataIntegrityViolationException("insert failed")).when(libraryEventsRepositorySpy)
+				.saveAll(anyIterable());
+		var consumerRecords = List.of(updateEventRecord(0, stored.getLibraryEventId()), newEventRecord(1, 457));
+
+		// when
+		assertThrows(DataIntegrityViolationException.class,
+				() -> libraryEventsService.processLibraryEvents(consumerRecords));
+
+		// then
+		var persisted = libraryEventsRepositorySpy.findById(stored.getLibraryEventId()).orElseThrow();
+		assertEquals("Kafka Using Spring Boot", persisted.getBook().getBookName());
+		assertEquals(1, libraryEventsRepositorySpy.count());
+	}
+
+	private ConsumerRecord<Integer, byte[]> newEventRecord(long offset, int bookId) {
+		var json = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":" + bookId
+				+ ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+		return new ConsumerRecord<>("library-events", 0, offset, null, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private ConsumerRecord<Integer, byte[]> updateEventRecord(long offset, int libraryEventId) {
+		var json = "{\"libraryEventId\":" + libraryEventId
+				+ ",\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot 2.x\",\"bookAuthor\":\"Dilip\"}}";
+		return new ConsumerRecord<>("library-events", 0, offset, libraryEventId, json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,127 @@
+package com.learnkafka.cache;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.learnkafka.repository.LibraryEventsRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryEventIdCacheTest {
+
+	@Mock
+	private LibraryEventsRepository libraryEventsRepository;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private LibraryEventIdCache cache(int maximumSize, Duration ttl) {
+		return new LibraryEventIdCache(libraryEventsRepository, meterRegistry, maximumSize, ttl);
+	}
+
+	@Test
+	void hitsAndMissesAreCounted() {
+		var cache = cache(100, Duration.ofMinutes(30));
+		cache.add(5);
+
+		assertTrue(cache.contains(5));
+		assertFalse(cache.contains(6));
+		// null ids (NEW events) are never looked up
+		assertFalse(cache.contains(null));
+
+		assertEquals(1.0, gets("hit"));
+		assertEquals(1.0, gets("miss"));
+	}
+
+	@Test
+	void addingAKnownIdAgainKeepsASingleEntry() {
+		var cache = cache(100, Duration.ofMinutes(30));
+
+		cache.add(5);
+		cache.add(5);
+		cache.add(null);
+
+		assertTrue(cache.contains(5));
+		assertEquals(1.0, meterRegistry.get("cache.size").tag("cache", LibraryEventIdCache.CACHE_NAME).gauge().value());
+	}
+
+	@Test
+	void invalidatedIdsGoBackToTheDb() {
+		var cache = cache(100, Duration.ofMinutes(30));
+		cache.add(5);
+
+		cache.invalidate(5);
+		cache.invalidate(null);
+
+		assertFalse(cache.contains(5));
+	}
+
+	@Test
+	void sizeIsBoundedByMaximumSize() {
+		var cache = cache(10, Duration.ofMinutes(30));
+
+		IntStream.range(0, 100).forEach(cache::add);
+
+		// eviction runs in Caffeine's maintenance, off the calling thread
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertTrue(
+				IntStream.range(0, 100).filter(cache::contains).count() <= 10, "more ids cached than maximumSize"));
+		assertTrue(meterRegistry.get("cache.evictions").tag("cache", LibraryEventIdCache.CACHE_NAME).functionCounter()
+				.count() >= 90);
+	}
+
+	@Test
+	void entriesExpireAfterTheTtl() {
+		var cache = cache(100, Duration.ofMillis(100));
+		cache.add(5);
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> !cache.contains(5));
+	}
+
+	@Test
+	void warmUpLoadsTheMostRecentIds() {
+		when(libraryEventsRepository.findRecentLibraryEventIds(PageRequest.of(0, 3))).thenReturn(List.of(9, 8, 7));
+		var cache = cache(3, Duration.ofMinutes(30));
+
+		cache.warmUp();
+
+		assertTrue(cache.contains(9));
+		assertTrue(cache.contains(8));
+		assertTrue(cache.contains(7));
+		assertFalse(cache.contains(6));
+	}
+
+	@Test
+	void idsAddedInATransactionAreOnlyCachedOnCommit() {
+		var cache = cache(100, Duration.ofMinutes(30));
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.add(5);
+			assertFalse(cache.contains(5));
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+			assertTrue(cache.contains(5));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private double gets(String result) {
+		return meterRegistry.get("cache.gets").tag("cache", LibraryEventIdCache.CACHE_NAME).tag("result", result)
+				.functionCounter().count();
+	}
+}
@@ -0,0 +1,57 @@
+package com.learnkafka.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class KeyOrderedExecutorTest {
+
+	@Test
+	void recordsOfTheSameKeyRunInSubmissionOrder() throws Exception {
+		// given
+		var keyOrderedExecutor = new KeyOrderedExecutor(4, "test-lane-");
+		int keys = 10;
+		int recordsPerKey = 200;
+		Map<Integer, List<Integer>> processed = new ConcurrentHashMap<>();
+		var latch = new CountDownLatch(keys * recordsPerKey);
+
+		// when -- interleaved like records of one partition
+		for (int sequence = 0; sequence < recordsPerKey; sequence++) {
+			for (int key = 0; key < keys; key++) {
+				int currentKey = key;
+				int currentSequence = sequence;
+				keyOrderedExecutor.execute(currentKey, () -> {
+					processed.computeIfAbsent(currentKey, k -> Collections.synchronizedList(new ArrayList<>()))
+							.add(currentSequence);
+					latch.countDown();
+				});
+			}
+		}
+
+		// then
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		var expected = IntStream.range(0, recordsPerKey).boxed().toList();
+		processed.values().forEach(sequences -> assertEquals(expected, sequences));
+		keyOrderedExecutor.shutdown(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void recordsWithoutKeyAreSpreadOverAllLanes() throws Exception {
+		var keyOrderedExecutor = new KeyOrderedExecutor(4, "test-lane-");
+
+		var lanes = IntStream.range(0, 8).map(i -> keyOrderedExecutor.laneFor(null)).boxed().toList();
+
+		assertEquals(List.of(0, 1, 2, 3, 0, 1, 2, 3), lanes);
+		keyOrderedExecutor.shutdown(5, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,160 @@
+package com.learnkafka.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import com.learnkafka.metrics.LibraryEventsMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PersistFlowControllerTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(80);
+
+	private static final long VERY_SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+	@Mock
+	private KafkaListenerEndpointRegistry endpointRegistry;
+
+	@Mock
+	private MessageListenerContainer container;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private PersistFlowController persistFlowController;
+
+	@BeforeEach
+	void setUp() {
+		when(endpointRegistry.getListenerContainers()).thenReturn(List.of(container));
+		meterRegistry = new SimpleMeterRegistry();
+		persistFlowController = new PersistFlowController(endpointRegistry, new LibraryEventsMetrics(meterRegistry));
+		persistFlowController.enabled = true;
+		persistFlowController.targetLatency = Duration.ofMillis(50);
+		persistFlowController.maxErrorRate = 0.1;
+		persistFlowController.intervalMs = 1000;
+		persistFlowController.initialRate = 100;
+		persistFlowController.minRate = 10;
+		persistFlowController.maxRate = 200;
+		persistFlowController.increaseStep = 10;
+		persistFlowController.decreaseFactor = 0.5;
+		persistFlowController.init();
+	}
+
+	@Test
+	void rateGrowsAdditivelyWhileTheBudgetIsUsedUp() {
+		// when
+		persist(100, FAST, false);
+		persistFlowController.evaluate();
+
+		// then -- paused once the 100 records of the interval were persisted, resumed by the evaluation
+		assertEquals(110, persistFlowController.getRate());
+		assertFalse(persistFlowController.isPaused());
+		verify(container).pause();
+		verify(container).resume();
+		assertEquals(1, meterRegistry.get("library.events.flow.pauses").tag("reason", "rate").counter().count());
+	}
+
+	@Test
+	void rateStaysWhenTheBudgetIsNotUsed() {
+		// when
+		persist(20, FAST, false);
+		persistFlowController.evaluate();
+
+		// then
+		assertEquals(100, persistFlowController.getRate());
+		verify(container, never()).pause();
+	}
+
+	@Test
+	void rateIsCutMultiplicativelyAboveTheTargetLatency() {
+		// when
+		persist(10, SLOW, false);
+		persistFlowController.evaluate();
+
+		// then -- over the target but below twice the target, no pause
+		assertEquals(50, persistFlowController.getRate());
+		assertFalse(persistFlowController.isPaused());
+
+		persist(5, SLOW, false);
+		persistFlowController.evaluate();
+		persist(5, SLOW, false);
+		persistFlowController.evaluate();
+		persist(5, SLOW, false);
+		persistFlowController.evaluate();
+		assertEquals(10, persistFlowController.getRate());
+	}
+
+	@Test
+	void veryHighLatencyPausesForAnInterval() {
+		// when
+		persist(10, VERY_SLOW, false);
+		persistFlowController.evaluate();
+
+		// then
+		assertTrue(persistFlowController.isPaused());
+		assertEquals(1, meterRegistry.get("library.events.flow.paused").gauge().value());
+		assertEquals(50, meterRegistry.get("library.events.flow.rate").gauge().value());
+
+		// nothing persisted while paused -- resumed at the lower rate
+		persistFlowController.evaluate();
+		assertFalse(persistFlowController.isPaused());
+		assertEquals(50, persistFlowController.getRate());
+		verify(container, times(1)).pause();
+		verify(container, times(1)).resume();
+	}
+
+	@Test
+	void errorRateAboveTheLimitPauses() {
+		// when
+		persist(8, FAST, false);
+		persist(2, FAST, true);
+		persistFlowController.evaluate();
+
+		// then
+		assertTrue(persistFlowController.isPaused());
+		assertEquals(50, persistFlowController.getRate());
+		assertEquals(1, meterRegistry.get("library.events.flow.pauses").tag("reason", "errors").counter().count());
+	}
+
+	@Test
+	void disabledControllerDoesNothing() {
+		// given
+		persistFlowController.enabled = false;
+
+		// when
+		persist(1000, VERY_SLOW, true);
+		persistFlowController.evaluate();
+
+		// then
+		verify(container, never()).pause();
+	}
+
+	private void persist(int times, long nanos, boolean failed) {
+		for (int i = 0; i < times; i++) {
+			persistFlowController.recordPersist(nanos, 1, failed);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.learnkafka.scheduler;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.learnkafka.entity.FailureRecord;
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.service.LibraryEventsService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class RetrySchedulerTest {
+
+	@Mock
+	private LibraryEventsService libraryEventsService;
+
+	@Mock
+	private FailureRecordRepository failureRecordRepository;
+
+	private RetryScheduler retryScheduler;
+
+	@BeforeEach
+	void setUp() {
+		retryScheduler = new RetryScheduler();
+		retryScheduler.libraryEventsService = libraryEventsService;
+		retryScheduler.failureRecordRepository = failureRecordRepository;
+		retryScheduler.libraryEventsMetrics = new LibraryEventsMetrics(new SimpleMeterRegistry());
+		retryScheduler.pageSize = 100;
+		retryScheduler.workers = 2;
+		retryScheduler.maxAttempts = 3;
+		retryScheduler.initialBackoff = Duration.ofSeconds(15);
+		retryScheduler.maxBackoff = Duration.ofMinutes(10);
+		retryScheduler.claimTtl = Duration.ofMinutes(2);
+		retryScheduler.startWorkers();
+	}
+
+	@AfterEach
+	void tearDown() {
+		retryScheduler.stopWorkers();
+	}
+
+	@Test
+	void retryFailedRecords_claimsPageAndWritesOutcomesInBulk() throws Exception {
+		// given -- 1 succeeds, 2 fails for the first time, 3 fails for the last time
+		var succeeding = failureRecord(1, 0, "{\"libraryEventId\":null}");
+		var failing = failureRecord(2, 0, "{\"libraryEventId\":999}");
+		var exhausted = failureRecord(3, 2, "{\"libraryEventId\":999}");
+		when(failureRecordRepository.findDueIds(anyString(), any(Instant.class), any()))
+				.thenReturn(List.of(1, 2, 3), List.of());
+		when(failureRecordRepository.claim(any(), anyString(), anyString(), any(Instant.class), any(Instant.class)))
+				.thenReturn(3);
+		when(failureRecordRepository.findAllByClaimedBy(anyString())).thenReturn(List.of(succeeding, failing, exhausted));
+		doAnswer(invocation -> {
+			ConsumerRecord<Integer, byte[]> consumerRecord = invocation.getArgument(0);
+			if (new String(consumerRecord.value(), StandardCharsets.UTF_8).contains("999")) {
+				throw new RuntimeException("Temporary network error");
+			}
+			return null;
+		}).when(libraryEventsService).processLibraryEvent(any());
+
+		// when
+		retryScheduler.retryFailedRecords();
+
+		// then
+		verify(failureRecordRepository).updateStatus(eq(List.of(1)), eq(LibraryEventStatus.SUCCESS.name()), anyString());
+		verify(failureRecordRepository).updateStatus(eq(List.of(3)), eq(LibraryEventStatus.DEAD.name()), anyString());
+		verify(failureRecordRepository).scheduleNextAttempt(eq(List.of(2)), eq(1), any(Instant.class), anyString());
+		verify(failureRecordRepository, never()).save(any());
+	}
+
+	private FailureRecord failureRecord(int id, int attempts, String value) {
+		return FailureRecord.builder()
+				.bookId(id)
+				.topic("library-events")
+				.partition(0)
+				.offset_value((long) id)
+				.errorRecord(value)
+				.status(LibraryEventStatus.RETRY.name())
+				.attempts(attempts)
+				.build();
+	}
+}
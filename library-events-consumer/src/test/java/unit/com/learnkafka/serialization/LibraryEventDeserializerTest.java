@@ -0,0 +1,46 @@
+package com.learnkafka.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+
+class LibraryEventDeserializerTest {
+
+	private final LibraryEventDeserializer libraryEventDeserializer = new LibraryEventDeserializer(new ObjectMapper());
+
+	@Test
+	void deserialize_jsonWithoutHeader() {
+		var json = "{\"libraryEventId\":123,\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+
+		var libraryEvent = libraryEventDeserializer.deserialize("library-events", new RecordHeaders(),
+				json.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(123, libraryEvent.getLibraryEventId());
+		assertEquals(LibraryEventType.UPDATE, libraryEvent.getLibraryEventType());
+		assertEquals("Kafka Using Spring Boot", libraryEvent.getBook().getBookName());
+	}
+
+	@Test
+	void deserialize_binaryDeclaredByHeader() {
+		var book = Book.builder().bookId(456).bookName("Kafka Using Spring Boot ✓").bookAuthor("Dilip").build();
+		var expected = LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).book(book).build();
+		var headers = new RecordHeaders();
+		headers.add(LibraryEventBinaryFormat.VALUE_FORMAT_HEADER,
+				LibraryEventBinaryFormat.BINARY.getBytes(StandardCharsets.UTF_8));
+
+		var libraryEvent = libraryEventDeserializer.deserialize("library-events", headers,
+				LibraryEventBinaryFormat.encode(expected));
+
+		assertEquals(null, libraryEvent.getLibraryEventId());
+		assertEquals(LibraryEventType.NEW, libraryEvent.getLibraryEventType());
+		assertEquals(book, libraryEvent.getBook());
+	}
+}
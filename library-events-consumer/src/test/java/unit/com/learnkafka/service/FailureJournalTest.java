@@ -0,0 +1,168 @@
+package com.learnkafka.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.entity.FailureRecord;
+import com.learnkafka.entity.LibraryEventStatus;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.FailureRecordRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class FailureJournalTest {
+
+	@Mock
+	private FailureRecordRepository failureRecordRepository;
+
+	@TempDir
+	Path tempDir;
+
+	private FailureJournal failureJournal;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private FailureJournal start(long replayIntervalMs) {
+		failureJournal = new FailureJournal(failureRecordRepository, new ObjectMapper().findAndRegisterModules(),
+				new LibraryEventsMetrics(meterRegistry), 100, 50, 20, 500, replayIntervalMs,
+				tempDir.resolve("failures.spill").toString());
+		failureJournal.start();
+		return failureJournal;
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		failureJournal.stop();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void appendsFromManyThreadsAreBatched() throws Exception {
+		start(60_000);
+		ExecutorService callers = Executors.newFixedThreadPool(20);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			int key = i;
+			futures.add(callers.submit(() -> failureJournal.append(failureRecord(key))));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		callers.shutdown();
+
+		ArgumentCaptor<List<FailureRecord>> batches = ArgumentCaptor.forClass(List.class);
+		verify(failureRecordRepository, atLeastOnce()).saveAll(batches.capture());
+		assertEquals(100, batches.getAllValues().stream().mapToInt(List::size).sum());
+		// 20 callers block at a time, so each saveAll carries more than one record
+		assertTrue(batches.getAllValues().size() < 100);
+		assertFalse(Files.exists(tempDir.resolve("failures.spill")));
+	}
+
+	@Test
+	void recordsAreSpilledWhenTheDbIsDownAndReplayedLater() throws Exception {
+		when(failureRecordRepository.saveAll(anyList()))
+				.thenThrow(new DataAccessResourceFailureException("db down"))
+				.thenAnswer(invocation -> invocation.getArgument(0));
+		start(100);
+
+		failureJournal.append(failureRecord(1));
+
+		// append returned, so the record must be on disk already
+		var spillFile = tempDir.resolve("failures.spill");
+		assertTrue(Files.readString(spillFile, StandardCharsets.UTF_8).contains("\"key_value\":1"));
+		assertEquals(1.0, meterRegistry.counter("library.events.failure.journal.spilled").count());
+
+		var replayFile = tempDir.resolve("failures.spill.replay");
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+			assertFalse(Files.exists(spillFile), "spill file not replayed");
+			assertFalse(Files.exists(replayFile), "replay file not removed");
+		});
+	}
+
+	@Test
+	void aHangingBatchIsSpilledAfterTheTimeout() throws Exception {
+		var dbStalled = new CountDownLatch(1);
+		when(failureRecordRepository.saveAll(anyList())).thenAnswer(invocation -> {
+			dbStalled.await();
+			return invocation.getArgument(0);
+		});
+		start(60_000);
+
+		try {
+			// durableTimeoutMs 500 for the queue and 500 more for the batch the writer took it into
+			assertTimeout(Duration.ofSeconds(5), () -> failureJournal.append(failureRecord(1)));
+			assertTrue(Files.readString(tempDir.resolve("failures.spill"), StandardCharsets.UTF_8)
+					.contains("\"key_value\":1"));
+		} finally {
+			dbStalled.countDown();
+		}
+	}
+
+	@Test
+	void anInterruptedCallerSpillsAndTheSpillFileStaysUsable() throws Exception {
+		var dbStalled = new CountDownLatch(1);
+		when(failureRecordRepository.saveAll(anyList())).thenAnswer(invocation -> {
+			dbStalled.await();
+			return invocation.getArgument(0);
+		});
+		start(60_000);
+
+		try {
+			Thread.currentThread().interrupt();
+			failureJournal.append(failureRecord(1));
+			assertTrue(Thread.interrupted(), "interrupt flag not restored");
+
+			// the spill channel must not have been closed by the interrupt
+			failureJournal.append(failureRecord(2));
+			var spilled = Files.readString(tempDir.resolve("failures.spill"), StandardCharsets.UTF_8);
+			assertTrue(spilled.contains("\"key_value\":1"));
+			assertTrue(spilled.contains("\"key_value\":2"));
+		} finally {
+			dbStalled.countDown();
+		}
+	}
+
+	private FailureRecord failureRecord(int key) {
+		return FailureRecord.builder()
+				.topic("library-events")
+				.key_value(key)
+				.errorRecord("{}")
+				.partition(0)
+				.offset_value((long) key)
+				.exception("failed")
+				.status(LibraryEventStatus.RETRY.name())
+				.attempts(0)
+				.nextAttemptAt(Instant.now())
+				.build();
+	}
+}
@@ -0,0 +1,118 @@
+package com.learnkafka.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import com.learnkafka.cache.LibraryEventViewCache;
+import com.learnkafka.domain.LibraryEventView;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.repository.LibraryEventsRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryEventQueryServiceTest {
+
+	@Mock
+	private LibraryEventsRepository libraryEventsRepository;
+
+	private LibraryEventViewCache libraryEventViewCache;
+
+	private LibraryEventQueryService libraryEventQueryService;
+
+	@BeforeEach
+	void setUp() {
+		libraryEventViewCache = new LibraryEventViewCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+		libraryEventQueryService = new LibraryEventQueryService(libraryEventsRepository, libraryEventViewCache);
+		libraryEventQueryService.defaultPageSize = 2;
+		libraryEventQueryService.maxPageSize = 10;
+	}
+
+	@Test
+	void findIsServedFromTheCacheUntilTheEventIsWritten() {
+		// given
+		when(libraryEventsRepository.findViewById(1)).thenReturn(Optional.of(view(1, "Kafka Using Spring Boot")),
+				Optional.of(view(1, "Kafka Using Spring Boot 2.X")));
+
+		// when / then
+		assertEquals("Kafka Using Spring Boot", libraryEventQueryService.find(1).book().bookName());
+		assertEquals("Kafka Using Spring Boot", libraryEventQueryService.find(1).book().bookName());
+		verify(libraryEventsRepository, times(1)).findViewById(1);
+
+		libraryEventViewCache.invalidate(1);
+		assertEquals("Kafka Using Spring Boot 2.X", libraryEventQueryService.find(1).book().bookName());
+		verify(libraryEventsRepository, times(2)).findViewById(1);
+	}
+
+	@Test
+	void unknownEventIsNotFoundAndNotCached() {
+		// given
+		when(libraryEventsRepository.findViewById(9)).thenReturn(Optional.empty());
+
+		// when / then
+		assertThrows(NoSuchElementException.class, () -> libraryEventQueryService.find(9));
+		assertThrows(NoSuchElementException.class, () -> libraryEventQueryService.find(9));
+		verify(libraryEventsRepository, times(2)).findViewById(9);
+	}
+
+	@Test
+	void fullPageHandsOutTheKeyOfItsLastEvent() {
+		// given
+		when(libraryEventsRepository.findPageAfter(0, PageRequest.of(0, 2)))
+				.thenReturn(List.of(view(3, "a"), view(5, "b")));
+		when(libraryEventsRepository.findPageAfter(5, PageRequest.of(0, 2))).thenReturn(List.of(view(8, "c")));
+
+		// when
+		var first = libraryEventQueryService.list(null, null, null, null);
+		var last = libraryEventQueryService.list(first.nextAfterId(), null, null, null);
+
+		// then
+		assertEquals(5, first.nextAfterId());
+		assertEquals(1, last.libraryEvents().size());
+		assertNull(last.nextAfterId());
+	}
+
+	@Test
+	void searchUsesTheIndexedQueries() {
+		// given
+		when(libraryEventsRepository.findPageByBookNamePrefixAfter(eq("Kafka"), eq(0), any()))
+				.thenReturn(List.of(view(3, "Kafka Using Spring Boot")));
+
+		// when
+		var page = libraryEventQueryService.list(null, 5, null, "Kafka");
+
+		// then
+		assertEquals(3, page.libraryEvents().get(0).libraryEventId());
+		assertThrows(IllegalArgumentException.class, () -> libraryEventQueryService.list(null, 5, "Dilip", "Kafka"));
+		assertThrows(IllegalArgumentException.class, () -> libraryEventQueryService.list(null, 11, "Dilip", null));
+	}
+
+	@Test
+	void invalidLimitDoesNotReachTheDb() {
+		assertThrows(IllegalArgumentException.class, () -> libraryEventQueryService.list(null, 0, null, null));
+		verifyNoInteractions(libraryEventsRepository);
+	}
+
+	private static LibraryEventView view(int libraryEventId, String bookName) {
+		return new LibraryEventView(libraryEventId, LibraryEventType.NEW, 456, bookName, "Dilip");
+	}
+}
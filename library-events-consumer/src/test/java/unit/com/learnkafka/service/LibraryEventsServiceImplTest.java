@@ -0,0 +1,263 @@
+package com.learnkafka.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.cache.LibraryEventIdCache;
+import com.learnkafka.cache.LibraryEventViewCache;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.flow.PersistFlowController;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.serialization.LibraryEventDeserializer;
+import com.learnkafka.store.LibraryEventStateStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryEventsServiceImplTest {
+
+	@Mock
+	private LibraryEventsRepository libraryEventsRepository;
+
+	@Mock
+	private LibraryEventIdCache libraryEventIdCache;
+
+	@Mock
+	private LibraryEventViewCache libraryEventViewCache;
+
+	@Mock
+	private LibraryEventStateStore libraryEventStateStore;
+
+	@Mock
+	private PersistFlowController persistFlowController;
+
+	@Mock
+	private ConsumedOffsetService consumedOffsetService;
+
+	@Spy
+	private LibraryEventDeserializer libraryEventDeserializer = new LibraryEventDeserializer(new ObjectMapper());
+
+	@Spy
+	private LibraryEventsMetrics libraryEventsMetrics = new LibraryEventsMetrics(new SimpleMeterRegistry());
+
+	@Spy
+	private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+	@InjectMocks
+	private LibraryEventsServiceImpl libraryEventsService;
+
+	@Captor
+	private ArgumentCaptor<List<LibraryEvent>> savedEvents;
+
+	@Test
+	void processLibraryEvents_persistsWholePollWithSaveAll() {
+		// given
+		var consumerRecords = List.of(newEventRecord(0, 456), newEventRecord(1, 457), newEventRecord(2, 458));
+
+		// when
+		libraryEventsService.processLibraryEvents(consumerRecords);
+
+		// then
+		verify(libraryEventsRepository).saveAll(savedEvents.capture());
+		assertEquals(3, savedEvents.getValue().size());
+	}
+
+	@Test
+	void processLibraryEvents_persistsRecordsBeforeFailureAndReportsFailedIndex() {
+		// given -- 999 is the temporary network error scenario
+		var consumerRecords = List.of(newEventRecord(0, 456), updateEventRecord(1, 999), newEventRecord(2, 458));
+
+		// when
+		var exception = assertThrows(BatchListenerFailedException.class,
+				() -> libraryEventsService.processLibraryEvents(consumerRecords));
+
+		// then
+		assertEquals(1, exception.getIndex());
+		assert exception.getCause() instanceof RecoverableDataAccessException;
+		verify(libraryEventsRepository).saveAll(savedEvents.capture());
+		assertEquals(1, savedEvents.getValue().size());
+	}
+
+	@Test
+	void processLibraryEventExactlyOnce_skipsAlreadyConsumedOffset() throws Exception {
+		// given -- the offset is already stored, i.e. the event was persisted before a crash
+		var consumerRecord = newEventRecord(7, 456);
+		when(consumedOffsetService.tryAdvance(consumerRecord)).thenReturn(false);
+
+		// when
+		libraryEventsService.processLibraryEventExactlyOnce(consumerRecord);
+
+		// then
+		verifyNoInteractions(libraryEventsRepository);
+	}
+
+	@Test
+	void processLibraryEventExactlyOnce_persistsNewOffset() throws Exception {
+		// given
+		var consumerRecord = newEventRecord(8, 456);
+		when(consumedOffsetService.tryAdvance(consumerRecord)).thenReturn(true);
+
+		// when
+		libraryEventsService.processLibraryEventExactlyOnce(consumerRecord);
+
+		// then
+		verify(libraryEventsRepository).save(any(LibraryEvent.class));
+	}
+
+	@Test
+	void processLibraryEvent_updateOfStoredEventWithRowPresent() throws Exception {
+		// given
+		upsert();
+		when(libraryEventStateStore.contains(5)).thenReturn(true);
+		when(libraryEventsRepository.updateBook(456, "Kafka Using Spring Boot", "Dilip", 5)).thenReturn(1);
+
+		// when
+		libraryEventsService.processLibraryEvent(updateEventRecord(0, 5));
+
+		// then -- no existence query, the UPDATE statement is the check
+		verify(libraryEventsRepository, never()).existsById(any());
+		verify(libraryEventStateStore).put(any(LibraryEvent.class));
+		verify(libraryEventViewCache).invalidate(5);
+	}
+
+	@Test
+	void processLibraryEvent_updateOfCachedEventWithRowMissingIsNotFound() {
+		// given -- e.g. the id survived in the changelog / cache but the in-memory DB was not restored
+		upsert();
+		when(libraryEventIdCache.contains(5)).thenReturn(true);
+		when(libraryEventsRepository.updateBook(anyInt(), anyString(), anyString(), any())).thenReturn(0);
+
+		// when
+		var exception = assertThrows(IllegalArgumentException.class,
+				() -> libraryEventsService.processLibraryEvent(updateEventRecord(0, 5)));
+
+		// then -- same error as a miss, the stale entries are dropped
+		assertEquals("Library event not found with given id: 5", exception.getMessage());
+		verify(libraryEventStateStore).remove(5);
+		verify(libraryEventIdCache).invalidate(5);
+		verify(libraryEventStateStore, never()).put(any());
+	}
+
+	@Test
+	void processLibraryEvent_updateWithAnotherBookIdIsRejected() {
+		// given -- the row exists, but the UPDATE statement is keyed on the stored bookId as well
+		upsert();
+		when(libraryEventStateStore.contains(5)).thenReturn(true);
+		when(libraryEventsRepository.updateBook(456, "Kafka Using Spring Boot", "Dilip", 5)).thenReturn(0);
+		when(libraryEventsRepository.existsById(5)).thenReturn(true);
+
+		// when
+		var exception = assertThrows(IllegalArgumentException.class,
+				() -> libraryEventsService.processLibraryEvent(updateEventRecord(0, 5)));
+
+		// then -- the entries are still valid, nothing is forgotten
+		assertEquals("Book id of library event 5 can not be changed to 456", exception.getMessage());
+		verify(libraryEventStateStore, never()).remove(any());
+		verify(libraryEventIdCache, never()).invalidate(any());
+		verify(libraryEventStateStore, never()).put(any());
+	}
+
+	@Test
+	void processLibraryEvent_updateMissFoundInTheDbIsCached() throws Exception {
+		// given
+		upsert();
+		when(libraryEventsRepository.existsById(5)).thenReturn(true);
+		when(libraryEventsRepository.updateBook(456, "Kafka Using Spring Boot", "Dilip", 5)).thenReturn(1);
+
+		// when
+		libraryEventsService.processLibraryEvent(updateEventRecord(0, 5));
+
+		// then -- the next UPDATE of the event skips the existence query
+		verify(libraryEventIdCache).add(5);
+	}
+
+	@Test
+	void processLibraryEvent_updateMissFallsBackToTheDb() {
+		// given
+		upsert();
+		when(libraryEventsRepository.existsById(5)).thenReturn(false);
+
+		// when / then
+		assertThrows(IllegalArgumentException.class,
+				() -> libraryEventsService.processLibraryEvent(updateEventRecord(0, 5)));
+		verify(libraryEventsRepository, never()).updateBook(anyInt(), anyString(), anyString(), any());
+	}
+
+	@Test
+	void processLibraryEvent_updateWithoutUpsertDoesNotTrustTheStore() throws Exception {
+		// given -- save() would insert a missing row, so the DB has to confirm it first
+		when(libraryEventsRepository.existsById(5)).thenReturn(true);
+
+		// when
+		libraryEventsService.processLibraryEvent(updateEventRecord(0, 5));
+
+		// then
+		verify(libraryEventStateStore, never()).contains(any());
+		verify(libraryEventsRepository).save(any(LibraryEvent.class));
+	}
+
+	@Test
+	void processLibraryEvents_updateOfStoredEventWithRowMissingEndsTheBatch() {
+		// given
+		upsert();
+		when(libraryEventStateStore.contains(5)).thenReturn(true);
+		when(libraryEventsRepository.updateBook(anyInt(), anyString(), anyString(), any())).thenReturn(0);
+		var consumerRecords = List.of(newEventRecord(0, 456), updateEventRecord(1, 5), newEventRecord(2, 458));
+
+		// when
+		var exception = assertThrows(BatchListenerFailedException.class,
+				() -> libraryEventsService.processLibraryEvents(consumerRecords));
+
+		// then -- the NEW event before it is stored, the one after it is left for the error handler
+		assertEquals(1, exception.getIndex());
+		assert exception.getCause() instanceof IllegalArgumentException;
+		verify(libraryEventsRepository).saveAll(savedEvents.capture());
+		assertEquals(1, savedEvents.getValue().size());
+		verify(libraryEventStateStore).remove(5);
+		verify(libraryEventIdCache).invalidate(5);
+	}
+
+	private void upsert() {
+		ReflectionTestUtils.setField(libraryEventsService, "upsertEnabled", true);
+	}
+
+	private ConsumerRecord<Integer, byte[]> newEventRecord(long offset, int bookId) {
+		var json = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":" + bookId
+				+ ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+		return new ConsumerRecord<>("library-events", 0, offset, null, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private ConsumerRecord<Integer, byte[]> updateEventRecord(long offset, int libraryEventId) {
+		var json = "{\"libraryEventId\":" + libraryEventId
+				+ ",\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+		return new ConsumerRecord<>("library-events", 0, offset, libraryEventId, json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,151 @@
+package com.learnkafka.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.cache.LibraryEventIdCache;
+import com.learnkafka.cache.LibraryEventViewCache;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.flow.PersistFlowController;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.serialization.LibraryEventDeserializer;
+import com.learnkafka.store.LibraryEventStateStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// The virtual profile (spring.threads.virtual.enabled) -- the listener task executor runs on virtual threads.
+// The throughput comparison of platform and virtual listener threads depends on the machine, it only runs with
+// the load tests (gradlew loadTest).
+@ExtendWith(MockitoExtension.class)
+class LibraryEventsServiceVirtualThreadsTest {
+
+	private static final int EVENTS = 300;
+
+	private static final long SIMULATED_DB_LATENCY_MS = 20;
+
+	// listener.concurrency of the comparison, one consumer thread per partition of the 3 partition topic
+	private static final int LISTENER_CONCURRENCY = 3;
+
+	@Mock
+	private LibraryEventsRepository libraryEventsRepository;
+
+	@Mock
+	private LibraryEventIdCache libraryEventIdCache;
+
+	@Mock
+	private LibraryEventViewCache libraryEventViewCache;
+
+	@Mock
+	private LibraryEventStateStore libraryEventStateStore;
+
+	@Mock
+	private PersistFlowController persistFlowController;
+
+	@Spy
+	private LibraryEventDeserializer libraryEventDeserializer = new LibraryEventDeserializer(new ObjectMapper());
+
+	@Spy
+	private LibraryEventsMetrics libraryEventsMetrics = new LibraryEventsMetrics(new SimpleMeterRegistry());
+
+	@InjectMocks
+	private LibraryEventsServiceImpl libraryEventsService;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void virtualProfileMovesTheListenerTaskExecutorToVirtualThreads() {
+		new ApplicationContextRunner().withConfiguration(AutoConfigurations.of(KafkaAutoConfiguration.class))
+				.withPropertyValues("spring.threads.virtual.enabled=true")
+				.run(context -> {
+					// LibraryEventsConsumerConfig builds its container factories through this configurer
+					var factory = new ConcurrentKafkaListenerContainerFactory<Object, Object>();
+					context.getBean(ConcurrentKafkaListenerContainerFactoryConfigurer.class).configure(factory,
+							context.getBean(ConsumerFactory.class));
+					var listenerTaskExecutor = factory.getContainerProperties().getListenerTaskExecutor();
+					var virtual = new CompletableFuture<Boolean>();
+					listenerTaskExecutor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+					assertTrue(virtual.get(5, TimeUnit.SECONDS));
+				});
+	}
+
+	@Test
+	@Tag("load")
+	void platformAndVirtualListenerThreadsOnBlockingIo() throws Exception {
+		// given
+		when(libraryEventsRepository.save(any(LibraryEvent.class))).thenAnswer(invocation -> {
+			Thread.sleep(SIMULATED_DB_LATENCY_MS);
+			return invocation.getArgument(0);
+		});
+
+		// when -- the container runs listener.concurrency consumer threads either way, the virtual profile only
+		// changes their type; the unbounded row adds concurrency, which the container does not
+		long platformNanos;
+		try (var executor = Executors.newFixedThreadPool(LISTENER_CONCURRENCY)) {
+			platformNanos = processAll(executor);
+		}
+		long virtualNanos;
+		try (var executor = Executors.newFixedThreadPool(LISTENER_CONCURRENCY, Thread.ofVirtual().factory())) {
+			virtualNanos = processAll(executor);
+		}
+		long unboundedNanos;
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			unboundedNanos = processAll(executor);
+		}
+
+		// then
+		System.out.printf("platform threads (%d)     : %.0f events/s%n", LISTENER_CONCURRENCY,
+				EVENTS / (platformNanos / 1e9));
+		System.out.printf("virtual threads (%d)      : %.0f events/s%n", LISTENER_CONCURRENCY,
+				EVENTS / (virtualNanos / 1e9));
+		System.out.printf("virtual per event        : %.0f events/s (concurrency, not thread type)%n",
+				EVENTS / (unboundedNanos / 1e9));
+		verify(libraryEventsRepository, times(3 * EVENTS)).save(any(LibraryEvent.class));
+	}
+
+	private long processAll(ExecutorService executor) throws Exception {
+		List<Future<?>> futures = new ArrayList<>(EVENTS);
+		long start = System.nanoTime();
+		for (int i = 0; i < EVENTS; i++) {
+			var json = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":" + i
+					+ ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+			var consumerRecord = new ConsumerRecord<Integer, byte[]>("library-events", 0, i, null,
+					json.getBytes(StandardCharsets.UTF_8));
+			futures.add(executor.submit(() -> {
+				libraryEventsService.processLibraryEvent(consumerRecord);
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		return System.nanoTime() - start;
+	}
+}
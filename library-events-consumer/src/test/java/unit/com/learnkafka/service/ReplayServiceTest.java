@@ -0,0 +1,169 @@
+package com.learnkafka.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.LongPredicate;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import com.learnkafka.domain.ReplayRequest;
+import com.learnkafka.entity.ReplayCheckpoint;
+import com.learnkafka.entity.ReplayJob;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.repository.ReplayCheckpointRepository;
+import com.learnkafka.repository.ReplayJobRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class ReplayServiceTest {
+
+	private static final String DLT = "library-events.DLT";
+
+	private final TopicPartition partition0 = new TopicPartition(DLT, 0);
+
+	@Mock
+	private ConsumerFactory<Object, Object> consumerFactory;
+
+	@Mock
+	private LibraryEventsService libraryEventsService;
+
+	@Mock
+	private FailureService failureService;
+
+	@Mock
+	private ReplayJobRepository replayJobRepository;
+
+	@Mock
+	private ReplayCheckpointRepository replayCheckpointRepository;
+
+	@Captor
+	private ArgumentCaptor<ConsumerRecord<Integer, byte[]>> replayed;
+
+	private final MockConsumer<Object, Object> metadataConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+	private final MockConsumer<Object, Object> partitionConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+	private ReplayService replayService;
+
+	@BeforeEach
+	void setUp() {
+		replayService = new ReplayService(consumerFactory, libraryEventsService, failureService, replayJobRepository,
+				replayCheckpointRepository, new LibraryEventsMetrics(new SimpleMeterRegistry()));
+		replayService.retryTopic = "library-events.RETRY";
+		replayService.deadLetterTopic = DLT;
+		replayService.maxParallelism = 4;
+		replayService.checkpointEvery = 3;
+		replayService.pollTimeout = Duration.ofMillis(50);
+	}
+
+	@Test
+	void replaysMatchingKeysUpToTheEndOfTheRange() throws Exception {
+		// given -- offsets 0..9 with key = offset, the record with key 3 fails again
+		givenDltRecords(10, offset -> false);
+		doAnswer(invocation -> {
+			ConsumerRecord<Integer, byte[]> record = invocation.getArgument(0);
+			if (record.key() == 3) {
+				throw new IllegalArgumentException("still invalid");
+			}
+			return null;
+		}).when(libraryEventsService).processLibraryEvent(any());
+
+		// when -- toOffset is exclusive, key 8 is out of range
+		var progress = replayService.start(new ReplayRequest(DLT, null, null, 8L, null, null, null,
+				List.of(1, 2, 3, 8), null, 1));
+		replayService.completion(progress.jobId()).join();
+
+		// then
+		verify(libraryEventsService, times(3)).processLibraryEvent(any());
+		verify(failureService).saveFailedRecord(argThat(record -> record.key() == 3), any(), eq("DEAD"));
+		var checkpoint = lastCheckpoint();
+		assertEquals(8, checkpoint.getNextOffset());
+		assertEquals(2, checkpoint.getReplayed());
+		assertEquals(1, checkpoint.getFailed());
+		assertEquals(5, checkpoint.getSkipped());
+		verify(replayJobRepository, atLeastOnce()).save(argThat((ReplayJob job) -> "COMPLETED".equals(job.getStatus())));
+	}
+
+	@Test
+	void replaysOnlyRecordsWithAMatchingExceptionHeader() throws Exception {
+		// given -- even offsets failed with a RecoverableDataAccessException
+		givenDltRecords(6, offset -> offset % 2 == 0);
+
+		// when
+		var progress = replayService.start(new ReplayRequest(DLT, List.of(0), null, null, null, null,
+				"RecoverableDataAccessException", null, 1000, 1));
+		replayService.completion(progress.jobId()).join();
+
+		// then
+		verify(libraryEventsService, times(3)).processLibraryEvent(replayed.capture());
+		assertEquals(List.of(0L, 2L, 4L), replayed.getAllValues().stream().map(ConsumerRecord::offset).toList());
+		assertEquals(6, lastCheckpoint().getNextOffset());
+		assertEquals(3, lastCheckpoint().getSkipped());
+	}
+
+	@Test
+	void onlyRetryAndDeadLetterTopicsCanBeReplayed() {
+		assertThrows(IllegalArgumentException.class, () -> replayService
+				.start(new ReplayRequest("library-events", null, null, null, null, null, null, null, null, null)));
+		verifyNoInteractions(consumerFactory);
+	}
+
+	private void givenDltRecords(int count, LongPredicate recoverable) {
+		metadataConsumer.updatePartitions(DLT,
+				List.of(new PartitionInfo(DLT, 0, Node.noNode(), new Node[0], new Node[0])));
+		metadataConsumer.updateBeginningOffsets(Map.of(partition0, 0L));
+		metadataConsumer.updateEndOffsets(Map.of(partition0, (long) count));
+		when(consumerFactory.createConsumer(anyString(), anyString(), anyString(), any(Properties.class)))
+				.thenReturn(metadataConsumer, partitionConsumer);
+
+		List<ConsumerRecord<Object, Object>> records = new ArrayList<>();
+		for (int offset = 0; offset < count; offset++) {
+			var record = new ConsumerRecord<Object, Object>(DLT, 0, offset, offset,
+					("{\"libraryEventId\":" + offset + "}").getBytes(StandardCharsets.UTF_8));
+			var exception = recoverable.test(offset) ? "org.springframework.dao.RecoverableDataAccessException"
+					: "java.lang.IllegalArgumentException";
+			record.headers().add(KafkaHeaders.DLT_EXCEPTION_FQCN, exception.getBytes(StandardCharsets.UTF_8));
+			records.add(record);
+		}
+		partitionConsumer.schedulePollTask(() -> records.forEach(partitionConsumer::addRecord));
+	}
+
+	// the workers update the same checkpoint instance they save
+	private ReplayCheckpoint lastCheckpoint() {
+		var checkpoints = ArgumentCaptor.forClass(ReplayCheckpoint.class);
+		verify(replayCheckpointRepository, atLeastOnce()).save(checkpoints.capture());
+		return checkpoints.getValue();
+	}
+}
@@ -0,0 +1,35 @@
+package com.learnkafka.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void permitsAreSpacedEvenlyOnceTheBurstIsUsedUp() {
+		var tokenBucket = new TokenBucket(10);
+		long now = System.nanoTime() + 5 * SECOND;
+
+		// idle for a while -- one second worth of permits right away
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, tokenBucket.reserve(now));
+		}
+		assertEquals(SECOND / 10, tokenBucket.reserve(now), 1);
+		assertEquals(2 * SECOND / 10, tokenBucket.reserve(now), 1);
+	}
+
+	@Test
+	void idleTimeDoesNotAddMoreThanOneSecondOfPermits() {
+		var tokenBucket = new TokenBucket(2);
+		long now = System.nanoTime() + 60 * SECOND;
+
+		assertEquals(0, tokenBucket.reserve(now));
+		assertEquals(0, tokenBucket.reserve(now));
+		assertEquals(SECOND / 2, tokenBucket.reserve(now), 1);
+	}
+}
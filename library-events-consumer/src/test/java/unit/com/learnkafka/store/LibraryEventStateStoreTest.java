@@ -0,0 +1,156 @@
+package com.learnkafka.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import com.learnkafka.entity.Book;
+import com.learnkafka.entity.LibraryEvent;
+import com.learnkafka.entity.LibraryEventType;
+import com.learnkafka.metrics.LibraryEventsMetrics;
+import com.learnkafka.serialization.LibraryEventBinaryFormat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryEventStateStoreTest {
+
+	private static final String CHANGELOG = "library-events.changelog";
+
+	private static final int PARTITIONS = 3;
+
+	@Mock
+	private KafkaTemplate<Integer, Object> kafkaTemplate;
+
+	@Mock
+	private ConsumerFactory<Object, Object> consumerFactory;
+
+	@Captor
+	private ArgumentCaptor<ProducerRecord<Integer, Object>> changelogRecords;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private LibraryEventStateStore stateStore;
+
+	@BeforeEach
+	void setUp() {
+		stateStore = new LibraryEventStateStore(kafkaTemplate, consumerFactory, new LibraryEventsMetrics(meterRegistry));
+		stateStore.enabled = true;
+		stateStore.changelogTopic = CHANGELOG;
+		stateStore.slabBytes = 4096;
+		stateStore.initialCapacity = 16;
+		stateStore.restoreParallelism = 2;
+		stateStore.restorePollTimeout = Duration.ofMillis(50);
+		stateStore.restoreTimeout = Duration.ofSeconds(30);
+		stateStore.init();
+	}
+
+	@Test
+	void putUpdatesTheViewAndWritesTheChangelog() {
+		// given
+		when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+
+		// when
+		stateStore.put(libraryEvent(7, LibraryEventType.NEW, "Kafka Using Spring Boot"));
+		stateStore.put(libraryEvent(7, LibraryEventType.UPDATE, "Kafka Using Spring Boot 2.X"));
+
+		// then
+		assertTrue(stateStore.contains(7));
+		assertFalse(stateStore.contains(8));
+		var view = stateStore.find(7).orElseThrow();
+		assertEquals(LibraryEventType.UPDATE, view.getLibraryEventType());
+		assertEquals("Kafka Using Spring Boot 2.X", view.getBook().getBookName());
+		verify(kafkaTemplate, times(2)).send(changelogRecords.capture());
+		assertEquals(CHANGELOG, changelogRecords.getValue().topic());
+		assertEquals(7, changelogRecords.getValue().key());
+	}
+
+	@Test
+	void restoresEveryPartitionOfTheChangelog() {
+		// given -- keys 0..29 spread over the partitions, key 3 updated later and key 4 deleted with a tombstone
+		Map<TopicPartition, List<ConsumerRecord<Object, Object>>> changelog = new HashMap<>();
+		for (int key = 0; key < 30; key++) {
+			append(changelog, key,
+					LibraryEventBinaryFormat.encode(libraryEvent(key, LibraryEventType.NEW, "book-" + key)));
+		}
+		append(changelog, 3, LibraryEventBinaryFormat.encode(libraryEvent(3, LibraryEventType.UPDATE, "book-3 v2")));
+		append(changelog, 4, null);
+		when(consumerFactory.createConsumer(anyString(), anyString(), anyString(), any(Properties.class)))
+				.thenAnswer(invocation -> changelogConsumer(changelog));
+
+		// when
+		stateStore.start();
+
+		// then
+		assertEquals(29, stateStore.size());
+		assertEquals("book-3 v2", stateStore.find(3).orElseThrow().getBook().getBookName());
+		assertFalse(stateStore.contains(4));
+		assertTrue(stateStore.contains(29));
+		assertEquals(29, meterRegistry.get("library.events.store.entries").gauge().value());
+		assertEquals(1, meterRegistry.get("library.events.store.restore").timer().count());
+	}
+
+	private static void append(Map<TopicPartition, List<ConsumerRecord<Object, Object>>> changelog, int key,
+			byte[] value) {
+		var topicPartition = new TopicPartition(CHANGELOG, key % PARTITIONS);
+		var records = changelog.computeIfAbsent(topicPartition, partition -> new ArrayList<>());
+		records.add(new ConsumerRecord<>(CHANGELOG, topicPartition.partition(), records.size(), key, value));
+	}
+
+	// a fresh consumer per call, the records of the assigned partition show up with the first poll
+	private static MockConsumer<Object, Object> changelogConsumer(
+			Map<TopicPartition, List<ConsumerRecord<Object, Object>>> changelog) {
+		var consumer = new MockConsumer<Object, Object>(OffsetResetStrategy.EARLIEST);
+		List<PartitionInfo> partitions = new ArrayList<>();
+		Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+		Map<TopicPartition, Long> endOffsets = new HashMap<>();
+		changelog.forEach((topicPartition, records) -> {
+			partitions.add(new PartitionInfo(CHANGELOG, topicPartition.partition(), Node.noNode(), new Node[0],
+					new Node[0]));
+			beginningOffsets.put(topicPartition, 0L);
+			endOffsets.put(topicPartition, (long) records.size());
+		});
+		consumer.updatePartitions(CHANGELOG, partitions);
+		consumer.updateBeginningOffsets(beginningOffsets);
+		consumer.updateEndOffsets(endOffsets);
+		consumer.schedulePollTask(() -> consumer.assignment()
+				.forEach(topicPartition -> changelog.get(topicPartition).forEach(consumer::addRecord)));
+		return consumer;
+	}
+
+	private static LibraryEvent libraryEvent(int libraryEventId, LibraryEventType libraryEventType, String bookName) {
+		var book = Book.builder().bookId(libraryEventId).bookName(bookName).bookAuthor("Dilip").build();
+		return LibraryEvent.builder().libraryEventId(libraryEventId).libraryEventType(libraryEventType).book(book)
+				.build();
+	}
+}
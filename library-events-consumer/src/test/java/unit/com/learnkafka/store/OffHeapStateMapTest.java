@@ -0,0 +1,82 @@
+package com.learnkafka.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapStateMapTest {
+
+	@Test
+	void putOverwritesAndRemoveDropsTheValue() {
+		var map = new OffHeapStateMap(1024, 16);
+
+		map.put(1, bytes("first"));
+		map.put(2, bytes("second"));
+		map.put(1, bytes("first, updated"));
+
+		assertEquals(2, map.size());
+		assertArrayEquals(bytes("first, updated"), map.get(1));
+		assertTrue(map.remove(2));
+		assertFalse(map.remove(2));
+		assertFalse(map.containsKey(2));
+		assertNull(map.get(2));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	void indexGrowsAndRemovalsKeepTheProbeSequences() {
+		var map = new OffHeapStateMap(4096, 16);
+		for (int key = 0; key < 10_000; key++) {
+			map.put(key, bytes("event-" + key));
+		}
+		for (int key = 0; key < 10_000; key += 3) {
+			map.remove(key);
+		}
+
+		for (int key = 0; key < 10_000; key++) {
+			if (key % 3 == 0) {
+				assertFalse(map.containsKey(key));
+			} else {
+				assertArrayEquals(bytes("event-" + key), map.get(key));
+			}
+		}
+		assertEquals(6666, map.size());
+	}
+
+	@Test
+	void overwrittenValuesAreCompactedAway() {
+		// 8 header bytes + 100 value bytes, 9 entries per 1 KiB slab
+		var map = new OffHeapStateMap(1024, 16);
+		for (int round = 0; round < 50; round++) {
+			for (int key = 0; key < 9; key++) {
+				var value = new byte[100];
+				value[0] = (byte) round;
+				map.put(key, value);
+			}
+		}
+
+		// live data fits into one slab, garbage never grows past one more
+		assertTrue(map.allocatedBytes() <= 3 * 1024);
+		assertEquals(9 * 108, map.liveBytes());
+		for (int key = 0; key < 9; key++) {
+			assertEquals(49, map.get(key)[0]);
+		}
+	}
+
+	@Test
+	void valueLargerThanASlabIsRejected() {
+		var map = new OffHeapStateMap(64, 16);
+		assertThrows(IllegalArgumentException.class, () -> map.put(1, new byte[64]));
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,81 @@
+package com.learnkafka.producer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Hot path of sendLibraryEvent_approach3 up to the point the record is handed to the KafkaTemplate
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProducerRecordBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final StringSerializer stringSerializer = new StringSerializer();
+
+	private final ByteArraySerializer byteArraySerializer = new ByteArraySerializer();
+
+	private final LibraryEvent libraryEvent = new LibraryEvent(123, LibraryEventType.UPDATE,
+			new Book(456, "Kafka Using Spring Boot", "Dilip"));
+
+	private LibraryEventsProducer libraryEventsProducer;
+
+	@Setup
+	public void setUp() {
+		// the template is not used by buildProducerRecord
+		var localSpool = new LocalSpool(new SimpleMeterRegistry());
+		libraryEventsProducer = new LibraryEventsProducer(null, objectMapper, new SimpleMeterRegistry(), localSpool,
+				new SpoolWriter(localSpool));
+		libraryEventsProducer.topic = "library-events";
+	}
+
+	@Benchmark
+	public ProducerRecord<Integer, Object> buildProducerRecord() throws JsonProcessingException {
+		var value = objectMapper.writeValueAsString(libraryEvent);
+		return libraryEventsProducer.buildProducerRecord(libraryEvent.libraryEventId(), value);
+	}
+
+	// String path (approach 1 / 2): includes the StringSerializer step the kafka client runs on send()
+	@Benchmark
+	public byte[] buildAndSerializeProducerRecord() throws JsonProcessingException {
+		var value = objectMapper.writeValueAsString(libraryEvent);
+		var producerRecord = libraryEventsProducer.buildProducerRecord(libraryEvent.libraryEventId(), value);
+		return stringSerializer.serialize(producerRecord.topic(), producerRecord.headers(),
+				(String) producerRecord.value());
+	}
+
+	// approach 3 fast path: JSON bytes from the thread local buffer + ByteArraySerializer, shared headers
+	// compare gc.alloc.rate.norm with buildAndSerializeProducerRecord
+	@Benchmark
+	public byte[] buildAndSerializeProducerRecordFastPath() throws IOException {
+		var producerRecord = libraryEventsProducer.buildProducerRecord(libraryEvent.libraryEventId(),
+				libraryEventsProducer.toJsonBytes(libraryEvent));
+		return byteArraySerializer.serialize(producerRecord.topic(), producerRecord.headers(),
+				(byte[]) producerRecord.value());
+	}
+}
@@ -0,0 +1,53 @@
+package com.learnkafka.serialization;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+
+// Producer side of the wire format comparison -- LibraryEvent to the bytes handed to the kafka client
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+	private static final String TOPIC = "library-events";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final StringSerializer stringSerializer = new StringSerializer();
+
+	private final LibraryEventBinarySerializer binarySerializer = new LibraryEventBinarySerializer();
+
+	private final LibraryEvent libraryEvent = new LibraryEvent(123, LibraryEventType.UPDATE,
+			new Book(456, "Kafka Using Spring Boot", "Dilip"));
+
+	// current path: writeValueAsString + StringSerializer
+	@Benchmark
+	public byte[] json() throws JsonProcessingException {
+		return stringSerializer.serialize(TOPIC, new RecordHeaders(), objectMapper.writeValueAsString(libraryEvent));
+	}
+
+	@Benchmark
+	public byte[] binary() {
+		return binarySerializer.serialize(TOPIC, new RecordHeaders(), libraryEvent);
+	}
+}
@@ -1,23 +1,44 @@
 package com.learnkafka.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.kafka.config.TopicBuilder;
 
+/**
+ * Topic layout comes from topics.layout.* (topics.layout.main.* overrides a single setting for the main topic).
+ * KafkaAdmin creates the topic at startup. When it already exists with fewer partitions they are added
+ * through the Admin API, and with spring.kafka.admin.modify-topic-configs the topic configs are updated too.
+ * Partitions can only grow -- a topic with more partitions than configured is logged and left alone.
+ */
 @Configuration
 public class AutoCreateConfig {
 	
 	@Value("${spring.kafka.topic}")
 	String topic;
 	
+	@Autowired
+	Environment environment;
+	
 	@Bean
 	public NewTopic libraryEvents() {
 		return TopicBuilder
 				.name(topic)
-				.partitions(2)
-				.replicas(1)
+				.partitions(setting("partitions", Integer.class, 3))
+				.replicas(setting("replicas", Integer.class, 1))
+				.config(TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, setting("min-insync-replicas", String.class, "1"))
+				.config(TopicConfig.COMPRESSION_TYPE_CONFIG, setting("compression-type", String.class, "producer"))
+				.config(TopicConfig.SEGMENT_BYTES_CONFIG, setting("segment-bytes", String.class, "1073741824"))
+				.config(TopicConfig.RETENTION_MS_CONFIG, setting("retention-ms", String.class, "604800000"))
 				.build();
 	}
+	
+	private <T> T setting(String key, Class<T> type, T defaultValue) {
+		return environment.getProperty("topics.layout.main." + key, type,
+				environment.getProperty("topics.layout." + key, type, defaultValue));
+	}
 }
@@ -0,0 +1,37 @@
+package com.learnkafka.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.serialization.LibraryEventBinarySerializer;
+
+@Configuration
+public class ProducerSerializationConfig {
+
+	/**
+	 * The auto configured KafkaTemplate picks the value serializer by the type of the value
+	 * String       -> JSON written by the ObjectMapper (approach 1 and 2)
+	 * LibraryEvent -> LibraryEventBinarySerializer (producer.wireFormat=binary)
+	 * byte[]       -> already serialized payload, i.e. the JSON bytes of approach 3 (producer.wireFormat=json)
+	 * This overrides spring.kafka.producer.value-serializer
+	 */
+	@Bean
+	DefaultKafkaProducerFactoryCustomizer valueSerializerCustomizer() {
+		Map<Class<?>, Serializer<?>> delegates = new LinkedHashMap<>();
+		delegates.put(String.class, new StringSerializer());
+		delegates.put(LibraryEvent.class, new LibraryEventBinarySerializer());
+		delegates.put(byte[].class, new ByteArraySerializer());
+		return producerFactory -> ((DefaultKafkaProducerFactory<Object, Object>) producerFactory)
+				.setValueSerializer(new DelegatingByTypeSerializer(delegates));
+	}
+}
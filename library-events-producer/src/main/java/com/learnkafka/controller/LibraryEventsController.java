@@ -1,28 +1,55 @@
 package com.learnkafka.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventSendResult;
 import com.learnkafka.domain.LibraryEventType;
 import com.learnkafka.producer.LibraryEventsProducer;
 
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 
 @RestController
 public class LibraryEventsController {
 
 	private final LibraryEventsProducer libraryEventsProducer;
 
+	private final Validator validator;
+
+	// readers are immutable and thread safe, so the LibraryEvent deserializer is looked up only once
+	private final ObjectReader libraryEventReader;
+
 	// constructor injection
-	public LibraryEventsController(LibraryEventsProducer libraryEventsProducer) {
+	public LibraryEventsController(LibraryEventsProducer libraryEventsProducer, ObjectMapper objectMapper,
+			Validator validator) {
 		this.libraryEventsProducer = libraryEventsProducer;
+		this.validator = validator;
+		this.libraryEventReader = objectMapper.readerFor(LibraryEvent.class);
 	}
 
 	// private static final Logger logger =
@@ -66,6 +93,141 @@ public class LibraryEventsController {
 		}
 	}
 	
+	/**
+	 * Async variants of POST/PUT. The HTTP response is completed from the send callback, so the client gets
+	 * 201/200 only after the broker acknowledged the record (based on acks config) and 500 if the send failed.
+	 * The servlet thread is released as soon as the record is handed over to the producer, so the number of
+	 * in-flight requests is not limited by the tomcat thread pool.
+	 * 202 when the broker was not reachable and the event went to the local spool, it is sent once the broker is back.
+	 */
+	@PostMapping("/v1/libraryevent/async")
+	public CompletableFuture<ResponseEntity<Object>> postLibraryEventAsync(@RequestBody @Valid LibraryEvent event) {
+		logger.info("POST Async Request | Library Event : {} ", event);
+		return sendLibraryEventAsync(event, HttpStatus.CREATED);
+	}
+
+	@PutMapping("/v1/libraryevent/async")
+	public CompletableFuture<ResponseEntity<Object>> updateLibraryEventAsync(
+			@RequestBody @Valid LibraryEvent libraryEvent) {
+		logger.info("PUT Async Request | Library Event : {} ", libraryEvent);
+		ResponseEntity<String> BAD_REQUEST = validateLibraryEvent(libraryEvent);
+		if (BAD_REQUEST != null) {
+			return CompletableFuture
+					.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(BAD_REQUEST.getBody()));
+		}
+		return sendLibraryEventAsync(libraryEvent, HttpStatus.OK);
+	}
+
+	private CompletableFuture<ResponseEntity<Object>> sendLibraryEventAsync(LibraryEvent event,
+			HttpStatus successStatus) {
+		try {
+			return libraryEventsProducer.sendLibraryEvent_approach3(event).handle((sendResult, throwable) -> {
+				if (throwable != null) {
+					return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+							.body(NestedExceptionUtils.getMostSpecificCause(throwable).getMessage());
+				}
+				var status = LibraryEventsProducer.isSpooled(sendResult) ? HttpStatus.ACCEPTED : successStatus;
+				return ResponseEntity.status(status).body(event);
+			});
+		} catch (Exception e) {
+			logger.error("Error sending library event : {} ", e.getMessage(), e);
+			return CompletableFuture
+					.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage()));
+		}
+	}
+
+	/**
+	 * Accepts either a JSON array of library events or an NDJSON stream (one event per line).
+	 * Every event is sent without waiting for the previous send to complete, the response is
+	 * completed asynchronously once all the sends are acknowledged (or failed) and has one result per event.
+	 * An invalid event only fails its own result, not the whole batch.
+	 * eos profile -- the body is read first and the events are then sent in one Kafka transaction, if it is aborted
+	 * every event of the request fails.
+	 */
+	@PostMapping(value = "/v1/libraryevents/batch", consumes = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_NDJSON_VALUE })
+	public CompletableFuture<ResponseEntity<List<LibraryEventSendResult>>> postLibraryEventsBatch(InputStream body)
+			throws IOException {
+		List<CompletableFuture<LibraryEventSendResult>> pendingResults = new ArrayList<>();
+		// by index, in request order
+		Map<Integer, LibraryEvent> parsedEvents = new LinkedHashMap<>();
+		// readValues() iterates over the elements of a root level array as well as over root level values
+		try (MappingIterator<LibraryEvent> events = libraryEventReader.readValues(body)) {
+			int index = 0;
+			while (true) {
+				LibraryEvent event;
+				try {
+					if (!events.hasNextValue()) {
+						break;
+					}
+					event = events.nextValue();
+				} catch (JsonParseException e) {
+					// syntax error, the rest of the stream can not be read
+					pendingResults.add(CompletableFuture
+							.completedFuture(LibraryEventSendResult.failed(index, null, e.getOriginalMessage())));
+					break;
+				} catch (JsonMappingException e) {
+					// the iterator skips the bad element and carries on with the next one
+					pendingResults.add(CompletableFuture
+							.completedFuture(LibraryEventSendResult.failed(index++, null, e.getOriginalMessage())));
+					continue;
+				}
+				parsedEvents.put(index++, event);
+			}
+		}
+		try {
+			pendingResults.addAll(libraryEventsProducer.inTransaction(() -> parsedEvents.entrySet().stream()
+					.map(parsedEvent -> sendBatchEvent(parsedEvent.getKey(), parsedEvent.getValue())).toList()));
+		} catch (RuntimeException e) {
+			// the transaction was aborted, none of the events is visible to read_committed consumers
+			logger.error("Batch transaction aborted : {} ", e.getMessage(), e);
+			var errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+			parsedEvents.forEach((index, event) -> pendingResults.add(CompletableFuture
+					.completedFuture(LibraryEventSendResult.failed(index, event.libraryEventId(), errorMessage))));
+		}
+		logger.info("Batch of {} library events submitted", pendingResults.size());
+
+		// the response is completed from the send callbacks, no servlet thread waits for the acks
+		return CompletableFuture.allOf(pendingResults.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+			var results = pendingResults.stream().map(CompletableFuture::join)
+					.sorted(Comparator.comparingInt(LibraryEventSendResult::index)).toList();
+			var status = results.stream().allMatch(LibraryEventSendResult::sent) ? HttpStatus.CREATED
+					: HttpStatus.MULTI_STATUS;
+			return ResponseEntity.status(status).body(results);
+		});
+	}
+
+	private CompletableFuture<LibraryEventSendResult> sendBatchEvent(int index, LibraryEvent event) {
+		var libraryEventId = event.libraryEventId();
+		var violations = validator.validate(event);
+		if (!violations.isEmpty()) {
+			var errorMessage = violations.stream()
+					.map(violation -> violation.getPropertyPath() + " - " + violation.getMessage())
+					.sorted()
+					.collect(Collectors.joining(","));
+			return CompletableFuture.completedFuture(LibraryEventSendResult.failed(index, libraryEventId, errorMessage));
+		}
+		if (event.libraryEventType() == LibraryEventType.UPDATE && libraryEventId == null) {
+			return CompletableFuture.completedFuture(
+					LibraryEventSendResult.failed(index, libraryEventId, "please provide the libraryEventId"));
+		}
+		try {
+			return libraryEventsProducer.sendLibraryEvent_approach3(event).handle((sendResult, throwable) -> {
+				if (throwable != null) {
+					return LibraryEventSendResult.failed(index, libraryEventId,
+							NestedExceptionUtils.getMostSpecificCause(throwable).getMessage());
+				}
+				if (LibraryEventsProducer.isSpooled(sendResult)) {
+					return LibraryEventSendResult.spooled(index, libraryEventId);
+				}
+				var metadata = sendResult.getRecordMetadata();
+				return LibraryEventSendResult.sent(index, libraryEventId, metadata.partition(), metadata.offset());
+			});
+		} catch (Exception e) {
+			return CompletableFuture.completedFuture(LibraryEventSendResult.failed(index, libraryEventId, e.getMessage()));
+		}
+	}
+
 	private ResponseEntity<String> validateLibraryEvent(LibraryEvent libraryEvent) {
 		if (libraryEvent.libraryEventId() == null) {
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("please provide the libraryEventId");
@@ -0,0 +1,31 @@
+package com.learnkafka.domain;
+
+// Per event outcome of a batch request. index is the position of the event in the request body
+public record LibraryEventSendResult(
+
+	int index,
+
+	Integer libraryEventId,
+
+	boolean sent,
+
+	Integer partition,
+
+	Long offset,
+
+	String error
+) {
+
+	public static LibraryEventSendResult sent(int index, Integer libraryEventId, int partition, long offset) {
+		return new LibraryEventSendResult(index, libraryEventId, true, partition, offset, null);
+	}
+
+	// accepted into the producer's local spool, partition and offset are not known until it is drained
+	public static LibraryEventSendResult spooled(int index, Integer libraryEventId) {
+		return new LibraryEventSendResult(index, libraryEventId, true, null, null, null);
+	}
+
+	public static LibraryEventSendResult failed(int index, Integer libraryEventId, String error) {
+		return new LibraryEventSendResult(index, libraryEventId, false, null, null, error);
+	}
+}
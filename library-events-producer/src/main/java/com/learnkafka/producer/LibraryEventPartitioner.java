@@ -0,0 +1,93 @@
+package com.learnkafka.producer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Partitioner for library-events, enabled with partitioner.class in spring.kafka.producer.properties.
+ * - null key (NEW events, the id is not known yet) -- round robin over the available partitions instead of
+ *   the sticky partition, so a burst of NEW events does not pile up on one partition
+ * - keyed records (UPDATE events) -- murmur2 of the key like the default partitioner, all events of a
+ *   libraryEventId stay on one partition and in order
+ * - optional hot key spreading: keys seen more than hot-keys.threshold times within the sliding window
+ *   (SlidingCountMinSketch) are spread over hot-keys.fanout partitions starting at their own one.
+ *   This gives up the per-key order of those keys, which is why it is off by default.
+ *
+ * The partitioner is created by the kafka client and not by Spring, so the per-partition counters
+ * library.events.partitioner.records{topic,partition} go to the global registry (Boot adds its registry to it).
+ */
+public class LibraryEventPartitioner implements Partitioner {
+
+	public static final String HOT_KEYS_ENABLED_CONFIG = "library.events.partitioner.hot-keys.enabled";
+
+	public static final String HOT_KEYS_THRESHOLD_CONFIG = "library.events.partitioner.hot-keys.threshold";
+
+	public static final String HOT_KEYS_FANOUT_CONFIG = "library.events.partitioner.hot-keys.fanout";
+
+	public static final String HOT_KEYS_WINDOW_MS_CONFIG = "library.events.partitioner.hot-keys.window-ms";
+
+	private final AtomicInteger roundRobin = new AtomicInteger();
+
+	private final Map<String, Counter> recordCounters = new ConcurrentHashMap<>();
+
+	private boolean hotKeysEnabled;
+
+	private long hotKeyThreshold;
+
+	private int hotKeyFanout;
+
+	private SlidingCountMinSketch sketch;
+
+	private Counter hotKeyRecords;
+
+	@Override
+	public void configure(Map<String, ?> configs) {
+		hotKeysEnabled = Boolean.parseBoolean(String.valueOf(configs.getOrDefault(HOT_KEYS_ENABLED_CONFIG, "false")));
+		hotKeyThreshold = Long.parseLong(String.valueOf(configs.getOrDefault(HOT_KEYS_THRESHOLD_CONFIG, "1000")));
+		hotKeyFanout = Integer.parseInt(String.valueOf(configs.getOrDefault(HOT_KEYS_FANOUT_CONFIG, "3")));
+		long windowMs = Long.parseLong(String.valueOf(configs.getOrDefault(HOT_KEYS_WINDOW_MS_CONFIG, "10000")));
+		sketch = new SlidingCountMinSketch(4, 2048, windowMs);
+		hotKeyRecords = Metrics.counter("library.events.partitioner.hot.key.records");
+	}
+
+	@Override
+	public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+		List<PartitionInfo> partitions = cluster.partitionsForTopic(topic);
+		int numPartitions = partitions.size();
+		int partition;
+		if (keyBytes == null) {
+			int next = roundRobin.getAndIncrement() & Integer.MAX_VALUE;
+			List<PartitionInfo> available = cluster.availablePartitionsForTopic(topic);
+			partition = available.isEmpty() ? next % numPartitions : available.get(next % available.size()).partition();
+		} else {
+			partition = Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+			if (hotKeysEnabled && sketch.add(keyBytes) > hotKeyThreshold) {
+				int offset = (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % Math.min(hotKeyFanout, numPartitions);
+				partition = (partition + offset) % numPartitions;
+				hotKeyRecords.increment();
+			}
+		}
+		recordCounter(topic, partition).increment();
+		return partition;
+	}
+
+	private Counter recordCounter(String topic, int partition) {
+		return recordCounters.computeIfAbsent(topic + "-" + partition,
+				name -> Metrics.counter("library.events.partitioner.records", "topic", topic, "partition",
+						String.valueOf(partition)));
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -1,10 +1,20 @@
 package com.learnkafka.producer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RetriableException;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeader;
 import org.slf4j.Logger;
@@ -15,25 +25,71 @@ import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.serialization.LibraryEventBinaryFormat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Component
 public class LibraryEventsProducer {
 
 	private static final Logger logger = LoggerFactory.getLogger(LibraryEventsProducer.class);
 
+	// immutable and shared by every record -- RecordHeaders copies the references, not the header bytes
+	private static final List<Header> EVENT_SOURCE_HEADERS = List
+			.of(new RecordHeader("event-source", "scanner".getBytes(StandardCharsets.UTF_8)));
+
+	// reusable JSON output buffer per sending thread (with virtual threads every request has its own thread,
+	// so the buffer is not reused there -- no worse than allocating one per send)
+	private static final ThreadLocal<ByteArrayBuilder> JSON_BUFFER = ThreadLocal
+			.withInitial(() -> new ByteArrayBuilder(512));
+
 	@Value("${spring.kafka.topic}")
 	String topic;
 
-	private final KafkaTemplate<Integer, String> kafkaTemplate;
+	// json (default) or binary -- see LibraryEventBinaryFormat, consumers accept both on the same topic
+	@Value("${producer.wireFormat:json}")
+	String wireFormat;
+
+	// partition of the RecordMetadata handed out for events that went to the LocalSpool instead of the broker
+	private static final int SPOOLED_PARTITION = -1;
+
+	private final KafkaTemplate<Integer, Object> kafkaTemplate;
+
+	private final LocalSpool localSpool;
+
+	private final SpoolWriter spoolWriter;
 
 	private final ObjectMapper objectMapper;
 
-	public LibraryEventsProducer(KafkaTemplate<Integer, String> kafkaTemplate, ObjectMapper objectMapper) {
+	// root type resolved once instead of on every writeValue
+	private final ObjectWriter libraryEventWriter;
+
+	// library.events.send{partition,outcome} -- time from send() to the broker ack
+	// library.events.send.errors{partition,exception} and library.events.send.inflight (sent, not yet acked),
+	// the errors of the sends the producer took are counted by SendErrorsProducerListener
+	private final MeterRegistry meterRegistry;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	// one timer per partition, looked up on every ack
+	private final Map<Integer, Timer> sendTimers = new ConcurrentHashMap<>();
+
+	public LibraryEventsProducer(KafkaTemplate<Integer, Object> kafkaTemplate, ObjectMapper objectMapper,
+			MeterRegistry meterRegistry, LocalSpool localSpool, SpoolWriter spoolWriter) {
 		super();
 		this.kafkaTemplate = kafkaTemplate;
+		this.localSpool = localSpool;
+		this.spoolWriter = spoolWriter;
 		this.objectMapper = objectMapper;
+		this.libraryEventWriter = objectMapper.writerFor(LibraryEvent.class);
+		this.meterRegistry = meterRegistry;
+		meterRegistry.gauge("library.events.send.inflight", inFlight);
 	}
 
 	/**
@@ -46,12 +102,12 @@ public class LibraryEventsProducer {
 	   (only one time after application boots up) -- sync call
 	   2: Send message happens - Returns a CompletableFuture (async call)
 	 */
-	public CompletableFuture<SendResult<Integer, String>> sendLibraryEvent(LibraryEvent event)
+	public CompletableFuture<SendResult<Integer, Object>> sendLibraryEvent(LibraryEvent event)
 			throws JsonProcessingException {
 		var key = event.libraryEventId();
 		var value = objectMapper.writeValueAsString(event);
 
-		var completableFuture = kafkaTemplate.send(topic, key, value);
+		var completableFuture = send(new ProducerRecord<>(topic, key, value));
 		return completableFuture.whenComplete((sendResult, throwable) -> {
 			if (throwable != null) {
 				handlerFailure(key, value, throwable);
@@ -62,21 +118,22 @@ public class LibraryEventsProducer {
 	}
 
 	// this will get printed based on acks value in cofig -- default is -1 or ALL
-	private void handleSuccess(Integer key, String value, SendResult<Integer, String> sendResult) {
-		logger.info("Message sent successfully for the key : {} and the value : {} , partition is {} ", key, value,
+	// debug only, the payload is not worth formatting on every send -- see the library.events.send metrics
+	private void handleSuccess(Integer key, Object value, SendResult<Integer, Object> sendResult) {
+		logger.debug("Message sent successfully for the key : {} and the value : {} , partition is {} ", key, value,
 				sendResult.getRecordMetadata().partition());
 	}
 
-	private void handlerFailure(Integer key, String value, Throwable throwable) {
+	private void handlerFailure(Integer key, Object value, Throwable throwable) {
 		logger.error("Error sending the message and exception is {}", throwable.getMessage(), throwable);
 	}
 
 	// Approach 2 -- sync
 	// Pure synchronous approach - get() is a synchronous call
-	public SendResult<Integer, String> sendLibraryEvent_approach2(LibraryEvent libraryEvent) throws Exception {
+	public SendResult<Integer, Object> sendLibraryEvent_approach2(LibraryEvent libraryEvent) throws Exception {
 		var key = libraryEvent.libraryEventId();
 		var value = objectMapper.writeValueAsString(libraryEvent);
-		SendResult<Integer, String> sendResult = kafkaTemplate.send(topic, key, value).get(3, TimeUnit.SECONDS);
+		SendResult<Integer, Object> sendResult = send(new ProducerRecord<>(topic, key, value)).get(3, TimeUnit.SECONDS);
 		// OR simply call .get();
 		handleSuccess(key, value, sendResult);
 		return sendResult;
@@ -85,27 +142,167 @@ public class LibraryEventsProducer {
 
 	// Approach 3 - Using ProducerRecord with headers
 	// similar behavior as approach 1 -- sync + async
-	public CompletableFuture<SendResult<Integer, String>> sendLibraryEvent_approach3(LibraryEvent event)
+	// producer.spool.enabled -- events the broker does not take (broker down, buffer full) go to the LocalSpool and
+	// the future completes with a spooled result, see isSpooled(). SpoolDrainer sends them once the broker is back
+	public CompletableFuture<SendResult<Integer, Object>> sendLibraryEvent_approach3(LibraryEvent event)
 			throws Exception {
 		
 		var key = event.libraryEventId();
-		var value = objectMapper.writeValueAsString(event);
+		// binary: the record itself is the value, the serializer writes it without the intermediate String
+		// json: UTF-8 bytes straight from the ObjectMapper, sent as is by the ByteArraySerializer --
+		// same bytes on the wire as the String + StringSerializer of approach 1 and 2
+		Object value = LibraryEventBinaryFormat.BINARY.equals(wireFormat) ? event : toJsonBytes(event);
 		
 		var producerRecord = buildProducerRecord(key, value);
-		
-		var completableFuture = kafkaTemplate.send(producerRecord);
+
+		var completableFuture = localSpool.isEnabled() ? sendOrSpool(producerRecord, event) : send(producerRecord);
 		return completableFuture.whenComplete((sendResult, throwable) -> {
 			if (throwable != null) {
-				handlerFailure(key, value, throwable);
+				handlerFailure(key, event, throwable);
 			} else {
-				handleSuccess(key, value, sendResult);
+				handleSuccess(key, event, sendResult);
+			}
+		});
+
+	}
+
+	// the slot keeps the spooled events in send order, see SpoolWriter
+	private CompletableFuture<SendResult<Integer, Object>> sendOrSpool(ProducerRecord<Integer, Object> producerRecord,
+			LibraryEvent event) {
+		var slot = spoolWriter.reserve();
+		if (slot.isBehindBacklog()) {
+			// the spool is not drained yet, queue up behind it to keep the order of the events
+			return spool(slot, producerRecord, event);
+		}
+		CompletableFuture<SendResult<Integer, Object>> sent;
+		try {
+			sent = send(producerRecord);
+		} catch (RuntimeException e) {
+			if (!isBrokerUnavailable(e)) {
+				spoolWriter.release(slot);
+				throw e;
+			}
+			return spool(slot, producerRecord, event);
+		}
+		return sent.handle((sendResult, throwable) -> {
+			// delivery.timeout.ms expired -- the broker was not reachable for the whole time
+			if (throwable != null && isBrokerUnavailable(throwable)) {
+				return spool(slot, producerRecord, event);
+			}
+			spoolWriter.release(slot);
+			return throwable == null ? CompletableFuture.completedFuture(sendResult)
+					: CompletableFuture.<SendResult<Integer, Object>>failedFuture(throwable);
+		}).thenCompose(Function.identity());
+	}
+
+	private CompletableFuture<SendResult<Integer, Object>> spool(SpoolWriter.Slot slot,
+			ProducerRecord<Integer, Object> producerRecord, LibraryEvent event) {
+		logger.warn("Broker not available, spooling the library event with key : {} ", producerRecord.key());
+		byte[] value;
+		try {
+			value = spoolValue(event, producerRecord.value());
+		} catch (IOException e) {
+			spoolWriter.release(slot);
+			return CompletableFuture.failedFuture(new UncheckedIOException(e));
+		}
+		return spoolWriter.fill(slot, producerRecord.key(), value).thenApply(written -> spooledResult(producerRecord));
+	}
+
+	// the spool keeps JSON whatever the wire format -- consumers accept both on the same topic
+	private byte[] spoolValue(LibraryEvent event, Object value) throws IOException {
+		return value instanceof byte[] json ? json : toJsonBytes(event);
+	}
+
+	private SendResult<Integer, Object> spooledResult(ProducerRecord<Integer, Object> producerRecord) {
+		return new SendResult<>(producerRecord, new RecordMetadata(new TopicPartition(topic, SPOOLED_PARTITION), -1,
+				0, System.currentTimeMillis(), -1, -1));
+	}
+
+	/**
+	 * true when the event went to the LocalSpool -- it is not on the broker yet, there is no partition and offset
+	 */
+	public static boolean isSpooled(SendResult<?, ?> sendResult) {
+		return sendResult.getRecordMetadata().partition() == SPOOLED_PARTITION;
+	}
+
+	// timeouts (no metadata, buffer full, delivery timeout), not leader etc. -- everything the client would retry
+	private static boolean isBrokerUnavailable(Throwable throwable) {
+		for (var cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof RetriableException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * eos profile (transaction-id-prefix set) -- runs all the sends of one request, or one spool chunk, in a single
+	 * Kafka transaction that is committed once after the last send. When a send or the commit fails the transaction
+	 * is aborted and the exception thrown here, none of its records reach a read_committed consumer.
+	 * Without a transactional template, or inside a transaction already, the sends just run.
+	 */
+	public <T> T inTransaction(Supplier<T> sends) {
+		if (!kafkaTemplate.isTransactional() || kafkaTemplate.inTransaction()) {
+			return sends.get();
+		}
+		return kafkaTemplate.executeInTransaction(operations -> sends.get());
+	}
+
+	// SpoolDrainer -- JSON bytes from the LocalSpool, never spooled again
+	CompletableFuture<SendResult<Integer, Object>> sendSpooled(Integer key, byte[] value) {
+		return send(buildProducerRecord(key, value));
+	}
+
+	// every approach sends through here -- in-flight gauge, send timer and error counter
+	private CompletableFuture<SendResult<Integer, Object>> send(ProducerRecord<Integer, Object> producerRecord) {
+		var sample = Timer.start(meterRegistry);
+		inFlight.incrementAndGet();
+		CompletableFuture<SendResult<Integer, Object>> completableFuture;
+		try {
+			// eos profile -- joins the transaction of the request, a single record is sent in a transaction of its own
+			// (send() outside of a transaction is rejected by a transactional template)
+			completableFuture = inTransaction(() -> kafkaTemplate.send(producerRecord));
+		} catch (RuntimeException e) {
+			// e.g. no metadata within max.block.ms, thrown before the record is even queued
+			inFlight.decrementAndGet();
+			sendErrorCounter(meterRegistry, producerRecord.partition(), e).increment();
+			throw e;
+		}
+		return completableFuture.whenComplete((sendResult, throwable) -> {
+			inFlight.decrementAndGet();
+			if (throwable != null) {
+				// the failure only carries the ProducerRecord -- the partition is the requested one, if any,
+				// library.events.send.errors has the partition the partitioner picked
+				sample.stop(meterRegistry.timer("library.events.send", "partition",
+						partitionTag(producerRecord.partition()), "outcome", "failure"));
+			} else {
+				sample.stop(sendTimers.computeIfAbsent(sendResult.getRecordMetadata().partition(),
+						partition -> meterRegistry.timer("library.events.send", "partition", partitionTag(partition),
+								"outcome", "success")));
 			}
 		});
+	}
+
+	static Counter sendErrorCounter(MeterRegistry meterRegistry, Integer partition, Throwable throwable) {
+		return meterRegistry.counter("library.events.send.errors", "partition", partitionTag(partition),
+				"exception", throwable.getClass().getSimpleName());
+	}
+
+	// unassigned -- the send failed before the partitioner picked one (no metadata within max.block.ms etc.)
+	private static String partitionTag(Integer partition) {
+		return partition == null ? "unassigned" : String.valueOf(partition);
+	}
 
+	// package private for ProducerRecordBenchmark (src/jmh)
+	ProducerRecord<Integer, Object> buildProducerRecord(Integer key, Object value) {
+		return new ProducerRecord<>(topic, null, key, value, EVENT_SOURCE_HEADERS);
 	}
 
-	private ProducerRecord<Integer, String> buildProducerRecord(Integer key, String value) {
-		List<Header> recordsHeaders = List.of(new RecordHeader("event-source", "scanner".getBytes()));
-		return new ProducerRecord<>(topic, null, key, value, recordsHeaders);
+	// the final byte[] is the only allocation left, the kafka client needs an array it can hold on to
+	byte[] toJsonBytes(LibraryEvent event) throws IOException {
+		var buffer = JSON_BUFFER.get();
+		buffer.reset();
+		libraryEventWriter.writeValue(buffer, event);
+		return buffer.toByteArray();
 	}
 }
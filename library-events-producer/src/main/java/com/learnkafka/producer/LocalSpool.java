@@ -0,0 +1,275 @@
+package com.learnkafka.producer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Disk backed spool for library events the broker did not take (broker down, producer buffer full).
+ * An append only log of memory mapped segment files (spool-<sequence>.log) under producer.spool.dir:
+ *
+ * [length:int][appendedAt:long][hasKey:byte][key:int][value bytes]
+ *
+ * The length is written last, a zero length marks the end of the written part of a segment, so a record torn
+ * by a crash is never read. The mapped pages belong to the OS page cache -- appends survive a crash of the
+ * process without an fsync, producer.spool.fsync=true forces every append to disk for OS crashes too.
+ *
+ * SpoolDrainer reads the log in order and commits its read position to spool.checkpoint once the broker
+ * acked what it read, fully drained segments are deleted.
+ */
+@Component
+public class LocalSpool {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalSpool.class);
+
+	private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + 1 + Integer.BYTES;
+
+	private static final String SEGMENT_PREFIX = "spool-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	public record SpooledEvent(Integer key, byte[] value, long appendedAt) {
+	}
+
+	// events read by peek() and the position after the last of them, handed back to commit()
+	public record Chunk(List<SpooledEvent> events, long segment, int position) {
+	}
+
+	@Value("${producer.spool.enabled:false}")
+	boolean enabled;
+
+	@Value("${producer.spool.dir:spool}")
+	Path dir;
+
+	@Value("${producer.spool.segmentBytes:67108864}")
+	int segmentBytes;
+
+	@Value("${producer.spool.fsync:false}")
+	boolean fsync;
+
+	private final MeterRegistry meterRegistry;
+
+	// segment sequence -> mapped segment, the first one is being read, the last one written
+	private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+
+	private MappedByteBuffer checkpoint;
+
+	private long readSegment;
+
+	private int readPosition;
+
+	private long writeSegment;
+
+	private int writePosition;
+
+	private volatile long backlog;
+
+	// appendedAt of the event at the read position, 0 when the spool is empty
+	private volatile long oldestAppendedAt;
+
+	private Counter appended;
+
+	public LocalSpool(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@PostConstruct
+	synchronized void open() throws IOException {
+		if (!enabled) {
+			return;
+		}
+		Files.createDirectories(dir);
+		try (var channel = FileChannel.open(dir.resolve("spool.checkpoint"), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			checkpoint = channel.map(MapMode.READ_WRITE, 0, Long.BYTES + Integer.BYTES);
+		}
+		readSegment = checkpoint.getLong(0);
+		readPosition = checkpoint.getInt(Long.BYTES);
+
+		List<Long> sequences;
+		try (Stream<Path> files = Files.list(dir)) {
+			sequences = files.map(file -> file.getFileName().toString())
+					.filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+					.map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+							name.length() - SEGMENT_SUFFIX.length())))
+					.sorted()
+					.toList();
+		}
+		for (long sequence : sequences) {
+			if (sequence < readSegment) {
+				// drained before the last shutdown, the delete did not happen
+				Files.deleteIfExists(segmentFile(sequence));
+			} else {
+				segments.put(sequence, map(sequence));
+			}
+		}
+		if (segments.isEmpty()) {
+			readSegment = Math.max(readSegment, 1);
+			readPosition = 0;
+			segments.put(readSegment, map(readSegment));
+		}
+		if (segments.firstKey() > readSegment) {
+			readSegment = segments.firstKey();
+			readPosition = 0;
+		}
+
+		// recount the backlog and find the end of the last segment
+		long count = 0;
+		for (var segment : segments.entrySet()) {
+			int position = segment.getKey() == readSegment ? readPosition : 0;
+			int length;
+			while (position + Integer.BYTES <= segmentBytes && (length = segment.getValue().getInt(position)) > 0) {
+				position += length;
+				count++;
+			}
+			writeSegment = segment.getKey();
+			writePosition = position;
+		}
+		backlog = count;
+		oldestAppendedAt = peekAppendedAt();
+
+		appended = meterRegistry.counter("library.events.spool.appended");
+		meterRegistry.gauge("library.events.spool.backlog", this, spool -> spool.backlog);
+		TimeGauge.builder("library.events.spool.oldest.age", this, TimeUnit.MILLISECONDS, LocalSpool::oldestAgeMillis)
+				.register(meterRegistry);
+		if (count > 0) {
+			logger.info("Spool {} holds {} events not yet sent to the broker", dir, count);
+		}
+	}
+
+	@PreDestroy
+	synchronized void close() {
+		if (enabled) {
+			segments.values().forEach(MappedByteBuffer::force);
+			checkpoint.force();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long backlog() {
+		return backlog;
+	}
+
+	public synchronized void append(Integer key, byte[] value) throws IOException {
+		int length = HEADER_BYTES + value.length;
+		if (length + Integer.BYTES > segmentBytes) {
+			throw new IllegalArgumentException(
+					"Event of " + value.length + " bytes does not fit into a spool segment of " + segmentBytes);
+		}
+		if (writePosition + length + Integer.BYTES > segmentBytes) {
+			// the zero length left behind at writePosition tells the reader to move on to the next segment
+			segments.get(writeSegment).force();
+			writeSegment++;
+			writePosition = 0;
+			segments.put(writeSegment, map(writeSegment));
+		}
+		var segment = segments.get(writeSegment);
+		long appendedAt = System.currentTimeMillis();
+		segment.putLong(writePosition + Integer.BYTES, appendedAt);
+		segment.put(writePosition + Integer.BYTES + Long.BYTES, (byte) (key == null ? 0 : 1));
+		segment.putInt(writePosition + Integer.BYTES + Long.BYTES + 1, key == null ? 0 : key);
+		segment.put(writePosition + HEADER_BYTES, value);
+		// commits the record
+		segment.putInt(writePosition, length);
+		if (fsync) {
+			segment.force(writePosition, length);
+		}
+		writePosition += length;
+		if (backlog++ == 0) {
+			oldestAppendedAt = appendedAt;
+		}
+		appended.increment();
+	}
+
+	/**
+	 * Up to maxEvents events from the read position on, the read position only moves with commit().
+	 */
+	public synchronized Chunk peek(int maxEvents) {
+		List<SpooledEvent> events = new ArrayList<>(Math.min(maxEvents, (int) Math.min(backlog, 1024)));
+		long segment = readSegment;
+		int position = readPosition;
+		while (events.size() < maxEvents) {
+			var buffer = segments.get(segment);
+			int length = position + Integer.BYTES <= segmentBytes ? buffer.getInt(position) : 0;
+			if (length == 0) {
+				if (segment == writeSegment) {
+					break;
+				}
+				segment++;
+				position = 0;
+				continue;
+			}
+			long appendedAt = buffer.getLong(position + Integer.BYTES);
+			boolean hasKey = buffer.get(position + Integer.BYTES + Long.BYTES) == 1;
+			int key = buffer.getInt(position + Integer.BYTES + Long.BYTES + 1);
+			var value = new byte[length - HEADER_BYTES];
+			buffer.get(position + HEADER_BYTES, value);
+			events.add(new SpooledEvent(hasKey ? key : null, value, appendedAt));
+			position += length;
+		}
+		return new Chunk(events, segment, position);
+	}
+
+	/**
+	 * Moves the read position past a chunk the broker acked and deletes the segments drained completely.
+	 */
+	public synchronized void commit(Chunk chunk) throws IOException {
+		checkpoint.putLong(0, chunk.segment());
+		checkpoint.putInt(Long.BYTES, chunk.position());
+		checkpoint.force();
+		while (readSegment < chunk.segment()) {
+			segments.remove(readSegment);
+			Files.deleteIfExists(segmentFile(readSegment));
+			readSegment++;
+		}
+		readPosition = chunk.position();
+		backlog -= chunk.events().size();
+		oldestAppendedAt = peekAppendedAt();
+	}
+
+	private long peekAppendedAt() {
+		var events = peek(1).events();
+		return events.isEmpty() ? 0 : events.get(0).appendedAt();
+	}
+
+	private double oldestAgeMillis() {
+		long oldest = oldestAppendedAt;
+		return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+	}
+
+	private MappedByteBuffer map(long sequence) throws IOException {
+		// the mapping stays valid after the channel is closed
+		try (var channel = FileChannel.open(segmentFile(sequence), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			return channel.map(MapMode.READ_WRITE, 0, segmentBytes);
+		}
+	}
+
+	private Path segmentFile(long sequence) {
+		return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+	}
+}
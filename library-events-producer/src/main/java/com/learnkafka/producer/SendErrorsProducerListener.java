@@ -0,0 +1,37 @@
+package com.learnkafka.producer;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.LoggingProducerListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ProducerListener of the auto configured KafkaTemplate (it replaces the default LoggingProducerListener and still
+ * logs like it) -- counts library.events.send.errors for the sends that fail once the record was handed to the
+ * producer. A failed send completes with a KafkaProducerException that only carries the ProducerRecord, onError gets
+ * the RecordMetadata of the producer callback too, i.e. the partition the partitioner picked.
+ */
+@Component
+public class SendErrorsProducerListener extends LoggingProducerListener<Object, Object> {
+
+	private final MeterRegistry meterRegistry;
+
+	public SendErrorsProducerListener(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void onError(ProducerRecord<Object, Object> producerRecord, RecordMetadata recordMetadata,
+			Exception exception) {
+		super.onError(producerRecord, recordMetadata, exception);
+		Integer partition = producerRecord.partition();
+		// UNKNOWN_PARTITION when the send failed before the partitioner ran
+		if (partition == null && recordMetadata != null
+				&& recordMetadata.partition() != RecordMetadata.UNKNOWN_PARTITION) {
+			partition = recordMetadata.partition();
+		}
+		LibraryEventsProducer.sendErrorCounter(meterRegistry, partition, exception).increment();
+	}
+}
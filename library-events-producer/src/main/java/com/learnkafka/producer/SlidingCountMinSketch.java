@@ -0,0 +1,68 @@
+package com.learnkafka.producer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * Count-min sketch over a sliding window, used by LibraryEventPartitioner to spot hot keys in constant memory.
+ * Counts live in two generations -- the current window and the previous one -- so an estimate covers
+ * between one and two windows and old traffic ages out instead of accumulating forever.
+ * Like every count-min sketch it may overestimate (hash collisions) but never underestimates.
+ */
+class SlidingCountMinSketch {
+
+	private final int depth;
+
+	private final int width;
+
+	private final long windowNanos;
+
+	private volatile AtomicLongArray current;
+
+	private volatile AtomicLongArray previous;
+
+	private volatile long windowStart;
+
+	SlidingCountMinSketch(int depth, int width, long windowMillis) {
+		this.depth = depth;
+		this.width = width;
+		this.windowNanos = windowMillis * 1_000_000L;
+		this.current = new AtomicLongArray(depth * width);
+		this.previous = new AtomicLongArray(depth * width);
+		this.windowStart = System.nanoTime();
+	}
+
+	// counts one occurrence of the key, returns its estimated count over the window
+	long add(byte[] key) {
+		rotateIfNeeded();
+		var currentCounts = current;
+		var previousCounts = previous;
+		int hash1 = Utils.murmur2(key);
+		// double hashing, row i uses hash1 + i * hash2
+		int hash2 = Integer.rotateLeft(hash1, 16) * 0x9E3779B9;
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			int index = row * width + Math.floorMod(hash1 + row * hash2, width);
+			estimate = Math.min(estimate, currentCounts.incrementAndGet(index) + previousCounts.get(index));
+		}
+		return estimate;
+	}
+
+	private void rotateIfNeeded() {
+		long now = System.nanoTime();
+		if (now - windowStart < windowNanos) {
+			return;
+		}
+		synchronized (this) {
+			long elapsed = now - windowStart;
+			if (elapsed < windowNanos) {
+				return;
+			}
+			// more than two windows without traffic -- nothing of the current one is recent enough to keep
+			previous = elapsed < 2 * windowNanos ? current : new AtomicLongArray(depth * width);
+			current = new AtomicLongArray(depth * width);
+			windowStart = now;
+		}
+	}
+}
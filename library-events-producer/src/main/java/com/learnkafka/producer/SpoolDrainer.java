@@ -0,0 +1,120 @@
+package com.learnkafka.producer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Sends the events of the LocalSpool back to the broker in spool order, chunkSize events at a time.
+ * A chunk is committed once all of its events are acked, a chunk that fails is sent again after retryBackoffMs --
+ * events of a partly acked chunk are sent twice (at least once, like the producer retries without idempotence).
+ *
+ * library.events.spool.drained counts the events sent from the spool, its rate is the drain rate.
+ */
+@Component
+public class SpoolDrainer {
+
+	private static final Logger logger = LoggerFactory.getLogger(SpoolDrainer.class);
+
+	@Value("${producer.spool.chunkSize:500}")
+	int chunkSize;
+
+	@Value("${producer.spool.pollIntervalMs:200}")
+	long pollIntervalMs;
+
+	@Value("${producer.spool.retryBackoffMs:5000}")
+	long retryBackoffMs;
+
+	// the whole chunk has to be acked within this time, keep it above delivery.timeout.ms
+	@Value("${producer.spool.chunkTimeoutMs:130000}")
+	long chunkTimeoutMs;
+
+	private final LocalSpool localSpool;
+
+	private final LibraryEventsProducer libraryEventsProducer;
+
+	private final Counter drained;
+
+	private volatile boolean running;
+
+	private Thread drainer;
+
+	public SpoolDrainer(LocalSpool localSpool, LibraryEventsProducer libraryEventsProducer,
+			MeterRegistry meterRegistry) {
+		this.localSpool = localSpool;
+		this.libraryEventsProducer = libraryEventsProducer;
+		this.drained = meterRegistry.counter("library.events.spool.drained");
+	}
+
+	@PostConstruct
+	void start() {
+		if (!localSpool.isEnabled()) {
+			return;
+		}
+		running = true;
+		drainer = new Thread(this::drainLoop, "spool-drainer");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		running = false;
+		if (drainer != null) {
+			drainer.interrupt();
+			drainer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+
+	private void drainLoop() {
+		while (running) {
+			try {
+				if (localSpool.backlog() == 0) {
+					Thread.sleep(pollIntervalMs);
+					continue;
+				}
+				if (!drainChunk()) {
+					Thread.sleep(retryBackoffMs);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// true when the chunk was acked and committed
+	boolean drainChunk() throws InterruptedException {
+		var chunk = localSpool.peek(chunkSize);
+		try {
+			// eos profile -- one transaction per chunk
+			var sends = libraryEventsProducer.inTransaction(() -> chunk.events().stream()
+					.map(event -> libraryEventsProducer.sendSpooled(event.key(), event.value()))
+					.toArray(CompletableFuture[]::new));
+			CompletableFuture.allOf(sends).get(chunkTimeoutMs, TimeUnit.MILLISECONDS);
+			localSpool.commit(chunk);
+			drained.increment(chunk.events().size());
+			if (localSpool.backlog() == 0) {
+				logger.info("Spool drained, sending library events directly again");
+			}
+			return true;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			// broker still not reachable, or no metadata within max.block.ms
+			logger.warn("Could not drain {} spooled events, retrying in {} ms : {} ", chunk.events().size(),
+					retryBackoffMs, e.getMessage());
+			return false;
+		}
+	}
+}
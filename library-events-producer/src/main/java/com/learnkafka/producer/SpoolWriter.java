@@ -0,0 +1,144 @@
+package com.learnkafka.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Writes the events LibraryEventsProducer spools into the LocalSpool, on a thread of its own and in send order.
+ * Every event reserves a slot (its send sequence) before it is handed to the producer. Once the send completes the
+ * slot is released (sent) or filled with the event (spooled), and slots are written strictly by sequence -- an event
+ * that was still in flight when the broker went away lands in the spool before every event sent after it, whatever
+ * order the callbacks fire in. The producer callback thread only fills the slot, the mmap writes (and fsync) happen
+ * on the spool-writer thread.
+ *
+ * While the spool has a backlog, or filled slots are waiting to be written, new events are not sent at all but
+ * spooled behind them, see Slot.isBehindBacklog().
+ */
+@Component
+public class SpoolWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(SpoolWriter.class);
+
+	private enum State { RESERVED, RELEASED, FILLED }
+
+	public static final class Slot {
+
+		private final long sequence;
+
+		private final boolean behindBacklog;
+
+		private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+		private State state = State.RESERVED;
+
+		private Integer key;
+
+		private byte[] value;
+
+		private Slot(long sequence, boolean behindBacklog) {
+			this.sequence = sequence;
+			this.behindBacklog = behindBacklog;
+		}
+
+		// the spool was backlogged when the slot was reserved -- the event must be spooled, not sent
+		public boolean isBehindBacklog() {
+			return behindBacklog;
+		}
+	}
+
+	private final LocalSpool localSpool;
+
+	// reserved and filled slots by sequence, guarded by this
+	private final TreeMap<Long, Slot> slots = new TreeMap<>();
+
+	private long nextSequence;
+
+	// filled slots not yet in the LocalSpool
+	private int filled;
+
+	private ExecutorService writer;
+
+	public SpoolWriter(LocalSpool localSpool) {
+		this.localSpool = localSpool;
+	}
+
+	@PostConstruct
+	void start() {
+		if (localSpool.isEnabled()) {
+			writer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "spool-writer"));
+		}
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		if (writer != null) {
+			writer.shutdown();
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	public synchronized Slot reserve() {
+		var slot = new Slot(nextSequence++, filled > 0 || localSpool.backlog() > 0);
+		slots.put(slot.sequence, slot);
+		return slot;
+	}
+
+	// the event was sent (or failed for good), nothing to spool -- the slots behind it may be written now
+	public void release(Slot slot) {
+		synchronized (this) {
+			slot.state = State.RELEASED;
+		}
+		writer.execute(this::writeReadySlots);
+	}
+
+	// completes once the event is in the LocalSpool
+	public CompletableFuture<Void> fill(Slot slot, Integer key, byte[] value) {
+		synchronized (this) {
+			slot.key = key;
+			slot.value = value;
+			slot.state = State.FILLED;
+			filled++;
+		}
+		writer.execute(this::writeReadySlots);
+		return slot.written;
+	}
+
+	// spool-writer thread only -- takes the leading slots that are no longer in flight and writes the filled ones
+	private void writeReadySlots() {
+		List<Slot> ready = new ArrayList<>();
+		synchronized (this) {
+			while (!slots.isEmpty() && slots.firstEntry().getValue().state != State.RESERVED) {
+				var slot = slots.pollFirstEntry().getValue();
+				if (slot.state == State.FILLED) {
+					ready.add(slot);
+				}
+			}
+		}
+		for (var slot : ready) {
+			try {
+				localSpool.append(slot.key, slot.value);
+				slot.written.complete(null);
+			} catch (Exception e) {
+				logger.error("Could not spool the library event with key : {} ", slot.key, e);
+				slot.written.completeExceptionally(e);
+			} finally {
+				synchronized (this) {
+					// counted until it is in the LocalSpool backlog, so reserve() never sees a gap
+					filled--;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.learnkafka.serialization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.utils.ByteUtils;
+
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+
+/**
+ * Compact binary wire format of LibraryEvent, the same layout is decoded by the consumer.
+ *
+ * <pre>
+ * byte    version (1)
+ * byte    presence flags -- 0x1 libraryEventId, 0x2 libraryEventType, 0x4 book
+ * int     libraryEventId
+ * byte    libraryEventType (0 NEW, 1 UPDATE)
+ * book:
+ *   byte    presence flags -- 0x1 bookId, 0x2 bookName, 0x4 bookAuthor
+ *   int     bookId
+ *   varint  length + UTF-8 bytes of bookName
+ *   varint  length + UTF-8 bytes of bookAuthor
+ * </pre>
+ * Absent (null) fields take no space. Records in this format carry the header value-format=binary,
+ * records without the header are JSON.
+ */
+public final class LibraryEventBinaryFormat {
+
+	public static final String VALUE_FORMAT_HEADER = "value-format";
+
+	public static final String BINARY = "binary";
+
+	public static final String JSON = "json";
+
+	static final byte VERSION = 1;
+
+	private static final byte HAS_ID = 0x1;
+	private static final byte HAS_TYPE = 0x2;
+	private static final byte HAS_BOOK = 0x4;
+
+	private static final byte HAS_BOOK_ID = 0x1;
+	private static final byte HAS_BOOK_NAME = 0x2;
+	private static final byte HAS_BOOK_AUTHOR = 0x4;
+
+	private static final LibraryEventType[] EVENT_TYPES = LibraryEventType.values();
+
+	private LibraryEventBinaryFormat() {
+	}
+
+	public static byte[] encode(LibraryEvent event) {
+		var book = event.book();
+		byte[] bookName = book == null || book.bookName() == null ? null : book.bookName().getBytes(StandardCharsets.UTF_8);
+		byte[] bookAuthor = book == null || book.bookAuthor() == null ? null
+				: book.bookAuthor().getBytes(StandardCharsets.UTF_8);
+
+		byte flags = 0;
+		int size = 2;
+		if (event.libraryEventId() != null) {
+			flags |= HAS_ID;
+			size += Integer.BYTES;
+		}
+		if (event.libraryEventType() != null) {
+			flags |= HAS_TYPE;
+			size += 1;
+		}
+		byte bookFlags = 0;
+		if (book != null) {
+			flags |= HAS_BOOK;
+			size += 1;
+			if (book.bookId() != null) {
+				bookFlags |= HAS_BOOK_ID;
+				size += Integer.BYTES;
+			}
+			if (bookName != null) {
+				bookFlags |= HAS_BOOK_NAME;
+				size += ByteUtils.sizeOfUnsignedVarint(bookName.length) + bookName.length;
+			}
+			if (bookAuthor != null) {
+				bookFlags |= HAS_BOOK_AUTHOR;
+				size += ByteUtils.sizeOfUnsignedVarint(bookAuthor.length) + bookAuthor.length;
+			}
+		}
+
+		var buffer = ByteBuffer.allocate(size);
+		buffer.put(VERSION).put(flags);
+		if (event.libraryEventId() != null) {
+			buffer.putInt(event.libraryEventId());
+		}
+		if (event.libraryEventType() != null) {
+			buffer.put((byte) event.libraryEventType().ordinal());
+		}
+		if (book != null) {
+			buffer.put(bookFlags);
+			if (book.bookId() != null) {
+				buffer.putInt(book.bookId());
+			}
+			putString(buffer, bookName);
+			putString(buffer, bookAuthor);
+		}
+		return buffer.array();
+	}
+
+	public static LibraryEvent decode(byte[] data) {
+		var buffer = ByteBuffer.wrap(data);
+		try {
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new SerializationException("Unsupported LibraryEvent binary format version: " + version);
+			}
+			byte flags = buffer.get();
+			Integer libraryEventId = (flags & HAS_ID) != 0 ? buffer.getInt() : null;
+			LibraryEventType libraryEventType = (flags & HAS_TYPE) != 0 ? EVENT_TYPES[buffer.get()] : null;
+			Book book = null;
+			if ((flags & HAS_BOOK) != 0) {
+				byte bookFlags = buffer.get();
+				Integer bookId = (bookFlags & HAS_BOOK_ID) != 0 ? buffer.getInt() : null;
+				String bookName = (bookFlags & HAS_BOOK_NAME) != 0 ? getString(buffer) : null;
+				String bookAuthor = (bookFlags & HAS_BOOK_AUTHOR) != 0 ? getString(buffer) : null;
+				book = new Book(bookId, bookName, bookAuthor);
+			}
+			return new LibraryEvent(libraryEventId, libraryEventType, book);
+		} catch (RuntimeException e) {
+			if (e instanceof SerializationException) {
+				throw e;
+			}
+			throw new SerializationException("Malformed LibraryEvent binary payload", e);
+		}
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] utf8) {
+		if (utf8 != null) {
+			ByteUtils.writeUnsignedVarint(utf8.length, buffer);
+			buffer.put(utf8);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = ByteUtils.readUnsignedVarint(buffer);
+		var value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+}
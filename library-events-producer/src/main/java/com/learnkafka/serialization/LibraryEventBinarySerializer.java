@@ -0,0 +1,30 @@
+package com.learnkafka.serialization;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.learnkafka.domain.LibraryEvent;
+
+// Writes LibraryEventBinaryFormat and declares it with the value-format header,
+// so JSON and binary records can live on the same topic while consumers migrate
+public class LibraryEventBinarySerializer implements Serializer<LibraryEvent> {
+
+	private static final byte[] BINARY_FORMAT = LibraryEventBinaryFormat.BINARY.getBytes(StandardCharsets.UTF_8);
+
+	@Override
+	public byte[] serialize(String topic, LibraryEvent data) {
+		return data == null ? null : LibraryEventBinaryFormat.encode(data);
+	}
+
+	@Override
+	public byte[] serialize(String topic, Headers headers, LibraryEvent data) {
+		if (data == null) {
+			return null;
+		}
+		headers.remove(LibraryEventBinaryFormat.VALUE_FORMAT_HEADER);
+		headers.add(LibraryEventBinaryFormat.VALUE_FORMAT_HEADER, BINARY_FORMAT);
+		return LibraryEventBinaryFormat.encode(data);
+	}
+}
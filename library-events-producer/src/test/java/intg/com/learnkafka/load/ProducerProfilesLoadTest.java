@@ -0,0 +1,123 @@
+package com.learnkafka.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+
+/**
+ * Sends the same library events with the producer settings of each tuning preset (application-<profile>.yml)
+ * and prints events/s, bytes on the wire and batching figures from the kafka producer metrics.
+ * The settings are bound exactly the way Spring Boot binds spring.kafka.producer.* for KafkaTemplate.
+ *
+ * Not part of the regular build, run it with
+ *   gradlew loadTest -Dload.events=200000 -Dload.payloadSize=512
+ */
+@Tag("load")
+@EmbeddedKafka(partitions = 3, topics = "library-events")
+class ProducerProfilesLoadTest {
+
+	private static final List<String> PROFILES = List.of("local", "latency", "balanced", "throughput");
+
+	private final int events = Integer.getInteger("load.events", 100_000);
+
+	private final int payloadSize = Integer.getInteger("load.payloadSize", 200);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	// the broker is passed in by the EmbeddedKafka JUnit condition, no Spring context needed
+	void compareProducerProfiles(EmbeddedKafkaBroker embeddedKafkaBroker) throws Exception {
+		// ~100 bytes of JSON without the book name
+		var libraryEvent = new LibraryEvent(null, LibraryEventType.NEW,
+				new Book(456, "K".repeat(Math.max(1, payloadSize - 100)), "Dilip"));
+		var value = objectMapper.writeValueAsString(libraryEvent);
+
+		var report = new StringBuilder("\n==== producer profiles, ").append(events).append(" events of ")
+				.append(value.length()).append(" bytes ====\n");
+		report.append(String.format("%-11s %12s %14s %14s %12s %12s %14s%n", "profile", "events/s", "bytes on wire",
+				"bytes/event", "batch avg", "compression", "request ms avg"));
+		for (String profile : PROFILES) {
+			report.append(run(profile, value, embeddedKafkaBroker));
+		}
+		System.out.println(report);
+	}
+
+	private String run(String profile, String value, EmbeddedKafkaBroker embeddedKafkaBroker) throws Exception {
+		var producerFactory = new DefaultKafkaProducerFactory<Integer, String>(
+				producerProperties(profile, embeddedKafkaBroker));
+		var kafkaTemplate = new KafkaTemplate<>(producerFactory);
+		try {
+			// connect and fetch metadata before the clock starts
+			kafkaTemplate.send("library-events", value).get();
+
+			long start = System.nanoTime();
+			List<CompletableFuture<?>> sends = new ArrayList<>(events);
+			for (int i = 0; i < events; i++) {
+				sends.add(kafkaTemplate.send("library-events", value));
+			}
+			CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+			double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+			var metrics = producerMetrics(kafkaTemplate);
+			assertEquals(events + 1, metrics.get("record-send-total").longValue());
+			double bytesOnWire = metrics.get("outgoing-byte-total");
+			return String.format("%-11s %12.0f %14.0f %14.1f %12.0f %12.2f %14.2f%n", profile, events / seconds,
+					bytesOnWire, bytesOnWire / (events + 1), metrics.get("batch-size-avg"),
+					metrics.get("compression-rate-avg"), metrics.get("request-latency-avg"));
+		} finally {
+			producerFactory.destroy();
+		}
+	}
+
+	// spring.kafka.* of application-<profile>.yml bound to KafkaProperties, pointed at the embedded broker
+	private Map<String, Object> producerProperties(String profile, EmbeddedKafkaBroker embeddedKafkaBroker)
+			throws Exception {
+		var propertySources = new YamlPropertySourceLoader().load(profile,
+				new ClassPathResource("application-" + profile + ".yml"));
+		List<ConfigurationPropertySource> sources = new ArrayList<>();
+		propertySources.forEach(propertySource -> ConfigurationPropertySources.from(propertySource).forEach(sources::add));
+		var kafkaProperties = new Binder(sources).bind("spring.kafka", KafkaProperties.class)
+				.orElseGet(KafkaProperties::new);
+
+		Map<String, Object> producerProperties = new HashMap<>(kafkaProperties.buildProducerProperties(null));
+		producerProperties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafkaBroker.getBrokersAsString());
+		producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, IntegerSerializer.class);
+		producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+		return producerProperties;
+	}
+
+	private Map<String, Double> producerMetrics(KafkaTemplate<Integer, String> kafkaTemplate) {
+		Map<String, Double> metrics = new HashMap<>();
+		kafkaTemplate.metrics().forEach((metricName, metric) -> {
+			if ("producer-metrics".equals(metricName.group()) && metric.metricValue() instanceof Double metricValue) {
+				metrics.put(metricName.name(), metricValue);
+			}
+		});
+		return metrics;
+	}
+}
@@ -0,0 +1,79 @@
+package com.learnkafka.producer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.IntegerDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.learnkafka.domain.LibraryEventSendResult;
+import com.learnkafka.util.TestUtil;
+
+/**
+ * eos profile -- the events of one batch request are sent in a single transaction. Every commit writes a control
+ * record to the partition, so with one partition a batch of 3 ends at offset 4 (3 records + 1 commit marker),
+ * a transaction per record would end at offset 6.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({ "local", "eos" })
+@EmbeddedKafka(topics = "library-events", partitions = 1, brokerProperties = {
+		"transaction.state.log.replication.factor=1", "transaction.state.log.min.isr=1" })
+@TestPropertySource(properties = { "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}",
+		"topics.layout.partitions=1" })
+class LibraryEventsProducerEosIntgTest {
+
+	private static final int EVENTS = 3;
+
+	@Autowired
+	private TestRestTemplate testRestTemplate;
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Test
+	void batchRequestIsCommittedInOneTransaction() {
+		// given
+		var events = List.of(TestUtil.libraryEventRecord(), TestUtil.libraryEventRecord(),
+				TestUtil.libraryEventRecord());
+
+		// when
+		var response = testRestTemplate.postForEntity("/v1/libraryevents/batch", events,
+				LibraryEventSendResult[].class);
+
+		// then
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		assertTrue(Arrays.stream(response.getBody()).allMatch(LibraryEventSendResult::sent));
+
+		var configs = new HashMap<>(KafkaTestUtils.consumerProps("eos-batch", "false", embeddedKafkaBroker));
+		configs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		configs.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+		try (var consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(),
+				new StringDeserializer()).createConsumer()) {
+			embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, "library-events");
+			var records = KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10), EVENTS);
+			assertEquals(EVENTS, records.count());
+
+			var partition = new TopicPartition("library-events", 0);
+			assertEquals(EVENTS + 1L, consumer.endOffsets(List.of(partition)).get(partition));
+		}
+	}
+}
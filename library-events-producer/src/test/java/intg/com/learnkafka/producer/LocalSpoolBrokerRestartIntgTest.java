@@ -0,0 +1,153 @@
+package com.learnkafka.producer;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.IntegerDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.util.TestUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import kafka.server.KafkaServer;
+
+/**
+ * Stops the broker, sends library events while it is down and checks that they are spooled and reach the topic
+ * in order once the broker is started again. The broker is built here instead of with @EmbeddedKafka,
+ * it has to come back on the same port for the producer to reconnect.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LocalSpoolBrokerRestartIntgTest {
+
+	private static final EmbeddedKafkaZKBroker broker = new EmbeddedKafkaZKBroker(1, false, 3, "library-events")
+			.kafkaPorts(freePort());
+
+	private static final Path spoolDir;
+
+	static {
+		broker.afterPropertiesSet();
+		try {
+			spoolDir = Files.createTempDirectory("library-events-spool");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry registry) {
+		registry.add("spring.kafka.producer.bootstrap-servers", broker::getBrokersAsString);
+		registry.add("spring.kafka.admin.properties.bootstrap.servers", broker::getBrokersAsString);
+		// fail fast while the broker is down
+		registry.add("spring.kafka.producer.properties.max.block.ms", () -> "2000");
+		registry.add("spring.kafka.producer.properties.request.timeout.ms", () -> "2000");
+		registry.add("spring.kafka.producer.properties.delivery.timeout.ms", () -> "4000");
+		registry.add("spring.kafka.producer.properties.reconnect.backoff.max.ms", () -> "500");
+		registry.add("producer.spool.enabled", () -> "true");
+		registry.add("producer.spool.dir", spoolDir::toString);
+		registry.add("producer.spool.retryBackoffMs", () -> "500");
+		registry.add("producer.spool.chunkTimeoutMs", () -> "10000");
+	}
+
+	@AfterAll
+	static void stopBroker() {
+		broker.destroy();
+	}
+
+	@Autowired
+	private TestRestTemplate testRestTemplate;
+
+	@Autowired
+	private LocalSpool localSpool;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void eventsSentWhileTheBrokerIsDownAreDeliveredInOrderAfterTheRestart() throws Exception {
+		// acked by the broker, not spooled
+		assertEquals(HttpStatus.CREATED, testRestTemplate
+				.postForEntity("/v1/libraryevent/async", libraryEvent(1), LibraryEvent.class).getStatusCode());
+
+		broker.getKafkaServers().forEach(server -> {
+			server.shutdown();
+			server.awaitShutdown();
+		});
+
+		// completes once delivery.timeout.ms expired and the event was spooled
+		assertEquals(HttpStatus.ACCEPTED, testRestTemplate
+				.postForEntity("/v1/libraryevent/async", libraryEvent(2), LibraryEvent.class).getStatusCode());
+		// the partitioner had picked the partition before the delivery timed out, the error is tagged with it
+		// (counted by SendErrorsProducerListener, which may run just after the send future completed)
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+			var sendErrors = meterRegistry.find("library.events.send.errors").counters();
+			assertFalse(sendErrors.isEmpty());
+			sendErrors.forEach(counter -> assertNotEquals("unassigned", counter.getId().getTag("partition")));
+		});
+		// the spool has a backlog now, the next events go straight into it
+		for (int id = 3; id <= 6; id++) {
+			assertEquals(HttpStatus.CREATED, testRestTemplate
+					.postForEntity("/v1/libraryevent", libraryEvent(id), LibraryEvent.class).getStatusCode());
+		}
+		// written by the spool-writer thread
+		await().atMost(Duration.ofSeconds(10))
+				.untilAsserted(() -> assertEquals(5, localSpool.backlog(), "events not spooled"));
+
+		broker.getKafkaServers().forEach(KafkaServer::startup);
+		await().atMost(Duration.ofSeconds(60)).pollInterval(Duration.ofMillis(100))
+				.untilAsserted(() -> assertEquals(0, localSpool.backlog(), "spool backlog not drained"));
+
+		var configs = new HashMap<>(KafkaTestUtils.consumerProps("spool-restart", "false", broker));
+		configs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		try (var consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(),
+				new StringDeserializer()).createConsumer()) {
+			broker.consumeFromAnEmbeddedTopic(consumer, "library-events");
+			var records = KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(30), 6);
+			assertEquals(6, records.count());
+
+			// keys are spread over the partitions, the spooled events 2..6 have to keep their order on each one
+			for (var partition : records.partitions()) {
+				List<Integer> keys = new ArrayList<>();
+				records.records(partition).forEach(record -> keys.add(record.key()));
+				assertEquals(keys.stream().sorted().toList(), keys);
+			}
+		}
+	}
+
+	private static LibraryEvent libraryEvent(int libraryEventId) {
+		return new LibraryEvent(libraryEventId, LibraryEventType.NEW, TestUtil.bookRecord());
+	}
+
+	private static int freePort() {
+		try (var socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -1,13 +1,21 @@
 package com.learnkafka.controller;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
@@ -131,4 +139,58 @@ class LibraryEventsControlleUnitTest {
 
 		// then
 	}
+
+	@Test
+	void postLibraryEventsBatch_reportsResultPerEvent() throws Exception {
+		// given -- NDJSON body with one valid and one invalid event
+		var inputNdjson = objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "\n"
+				+ objectMapper.writeValueAsString(TestUtil.libraryEventRecordWithInvalidBook()) + "\n";
+
+		var recordMetadata = new RecordMetadata(new TopicPartition("library-events", 1), 5L, 0, 0L, 0, 0);
+		var sendResult = new SendResult<Integer, Object>(new ProducerRecord<>("library-events", null, "value"),
+				recordMetadata);
+		when(libraryEventsProducer.sendLibraryEvent_approach3(isA(LibraryEvent.class)))
+				.thenReturn(CompletableFuture.completedFuture(sendResult));
+		// no transaction without the eos profile, the sends just run
+		when(libraryEventsProducer.inTransaction(any()))
+				.thenAnswer(invocation -> invocation.getArgument(0, Supplier.class).get());
+
+		// when
+		var mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevents/batch").content(inputNdjson)
+				.contentType(MediaType.APPLICATION_NDJSON))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+				.andExpect(MockMvcResultMatchers.status().isMultiStatus())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].sent").value(true))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].partition").value(1))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].offset").value(5))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[1].sent").value(false))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[1].error")
+						.value("book.bookId - must not be null,book.bookName - must not be blank"));
+
+		// then
+	}
+
+	@Test
+	void postLibraryEventAsync_completesFromSendCallback() throws Exception {
+		// given
+		var inputJson = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+
+		when(libraryEventsProducer.sendLibraryEvent_approach3(isA(LibraryEvent.class)))
+				.thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker not available")));
+
+		// when
+		var mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevent/async").content(inputJson)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+
+		// then -- send failure is reported to the client instead of 201
+		mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+				.andExpect(MockMvcResultMatchers.status().isInternalServerError())
+				.andExpect(MockMvcResultMatchers.content().string("broker not available"));
+	}
 }
@@ -0,0 +1,78 @@
+package com.learnkafka.producer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.junit.jupiter.api.Test;
+
+class LibraryEventPartitionerTest {
+
+	private static final String TOPIC = "library-events";
+
+	private final Node node = new Node(0, "localhost", 9092);
+
+	private final Cluster cluster = new Cluster("cluster", List.of(node),
+			IntStream.range(0, 3).mapToObj(partition -> new PartitionInfo(TOPIC, partition, node,
+					new Node[] { node }, new Node[] { node })).toList(),
+			Set.of(), Set.of());
+
+	private final IntegerSerializer keySerializer = new IntegerSerializer();
+
+	@Test
+	void nullKeysAreSpreadRoundRobin() {
+		var partitioner = partitioner(false);
+
+		var partitions = IntStream.range(0, 6)
+				.map(i -> partitioner.partition(TOPIC, null, null, "value", null, cluster)).boxed().toList();
+
+		assertEquals(List.of(0, 1, 2, 0, 1, 2), partitions);
+	}
+
+	@Test
+	void sameKeyStaysOnOnePartition() {
+		var partitioner = partitioner(false);
+		byte[] keyBytes = keySerializer.serialize(TOPIC, 123);
+
+		Set<Integer> partitions = new HashSet<>();
+		for (int i = 0; i < 5_000; i++) {
+			partitions.add(partitioner.partition(TOPIC, 123, keyBytes, "value", null, cluster));
+		}
+
+		assertEquals(1, partitions.size());
+	}
+
+	@Test
+	void hotKeyIsSpreadOnceOverThreshold() {
+		var partitioner = partitioner(true);
+		byte[] keyBytes = keySerializer.serialize(TOPIC, 123);
+
+		Set<Integer> belowThreshold = new HashSet<>();
+		Set<Integer> aboveThreshold = new HashSet<>();
+		for (int i = 1; i <= 200; i++) {
+			int partition = partitioner.partition(TOPIC, 123, keyBytes, "value", null, cluster);
+			(i <= 100 ? belowThreshold : aboveThreshold).add(partition);
+		}
+
+		assertEquals(1, belowThreshold.size());
+		assertTrue(aboveThreshold.size() > 1);
+	}
+
+	private LibraryEventPartitioner partitioner(boolean hotKeysEnabled) {
+		var partitioner = new LibraryEventPartitioner();
+		partitioner.configure(Map.of(LibraryEventPartitioner.HOT_KEYS_ENABLED_CONFIG, String.valueOf(hotKeysEnabled),
+				LibraryEventPartitioner.HOT_KEYS_THRESHOLD_CONFIG, "100",
+				LibraryEventPartitioner.HOT_KEYS_FANOUT_CONFIG, "3",
+				LibraryEventPartitioner.HOT_KEYS_WINDOW_MS_CONFIG, "60000"));
+		return partitioner;
+	}
+}
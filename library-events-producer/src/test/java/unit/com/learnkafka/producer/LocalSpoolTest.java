@@ -0,0 +1,109 @@
+package com.learnkafka.producer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LocalSpoolTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void eventsAreReadInOrderAndOnlyCommittedOnesAreRemoved() throws IOException {
+		var spool = open(4096);
+
+		spool.append(1, bytes("first"));
+		spool.append(null, bytes("second"));
+		spool.append(2, bytes("third"));
+		assertEquals(3, spool.backlog());
+
+		var chunk = spool.peek(2);
+		assertEquals(2, chunk.events().size());
+		assertEquals(1, chunk.events().get(0).key());
+		assertArrayEquals(bytes("first"), chunk.events().get(0).value());
+		assertNull(chunk.events().get(1).key());
+		// peek does not move the read position
+		assertEquals(2, spool.peek(2).events().size());
+		assertEquals(3, spool.backlog());
+
+		spool.commit(chunk);
+		assertEquals(1, spool.backlog());
+		var rest = spool.peek(10);
+		assertEquals(1, rest.events().size());
+		assertArrayEquals(bytes("third"), rest.events().get(0).value());
+
+		spool.commit(rest);
+		assertEquals(0, spool.backlog());
+		assertTrue(spool.peek(10).events().isEmpty());
+	}
+
+	@Test
+	void segmentsRollOverAndDrainedSegmentsAreDeleted() throws IOException {
+		// 17 header bytes + 100 value bytes, 8 events per 1 KiB segment
+		var spool = open(1024);
+		for (int i = 0; i < 20; i++) {
+			spool.append(i, new byte[100]);
+		}
+		assertEquals(3, segmentFiles());
+
+		var chunk = spool.peek(20);
+		assertEquals(20, chunk.events().size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i, chunk.events().get(i).key());
+		}
+		spool.commit(chunk);
+		assertEquals(1, segmentFiles());
+	}
+
+	@Test
+	void backlogAndReadPositionSurviveARestart() throws IOException {
+		var spool = open(1024);
+		for (int i = 0; i < 10; i++) {
+			spool.append(i, bytes("event-" + i));
+		}
+		spool.commit(spool.peek(4));
+		spool.close();
+
+		var reopened = open(1024);
+		assertEquals(6, reopened.backlog());
+		var chunk = reopened.peek(10);
+		assertEquals(4, chunk.events().get(0).key());
+		assertArrayEquals(bytes("event-9"), chunk.events().get(5).value());
+
+		// appends continue after the last event written before the restart
+		reopened.append(10, bytes("event-10"));
+		assertEquals(7, reopened.peek(10).events().size());
+	}
+
+	private LocalSpool open(int segmentBytes) throws IOException {
+		var spool = new LocalSpool(new SimpleMeterRegistry());
+		spool.enabled = true;
+		spool.dir = dir;
+		spool.segmentBytes = segmentBytes;
+		spool.open();
+		return spool;
+	}
+
+	private long segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
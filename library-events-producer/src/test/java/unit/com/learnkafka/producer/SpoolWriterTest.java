@@ -0,0 +1,89 @@
+package com.learnkafka.producer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SpoolWriterTest {
+
+	@TempDir
+	Path dir;
+
+	private LocalSpool localSpool;
+
+	private SpoolWriter spoolWriter;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		localSpool = new LocalSpool(new SimpleMeterRegistry());
+		localSpool.enabled = true;
+		localSpool.dir = dir;
+		localSpool.segmentBytes = 4096;
+		localSpool.open();
+		spoolWriter = new SpoolWriter(localSpool);
+		spoolWriter.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		spoolWriter.stop();
+		localSpool.close();
+	}
+
+	@Test
+	void slotsAreWrittenInSendOrderWhateverOrderTheyAreFilledIn() throws Exception {
+		// given -- the first event is still in flight when the later ones fail
+		var inFlight = spoolWriter.reserve();
+		var sentLater = spoolWriter.reserve();
+		var acked = spoolWriter.reserve();
+		assertFalse(inFlight.isBehindBacklog());
+
+		// when
+		var laterWritten = spoolWriter.fill(sentLater, 1, bytes("second"));
+		spoolWriter.release(acked);
+		// a new event queues up behind the filled slot, it is not sent
+		var next = spoolWriter.reserve();
+		assertTrue(next.isBehindBacklog());
+		var nextWritten = spoolWriter.fill(next, 1, bytes("third"));
+
+		// then -- nothing is written while the first slot is in flight
+		assertFalse(laterWritten.isDone());
+		assertEquals(0, localSpool.backlog());
+
+		spoolWriter.fill(inFlight, 1, bytes("first")).get(5, TimeUnit.SECONDS);
+		nextWritten.get(5, TimeUnit.SECONDS);
+		var events = localSpool.peek(10).events();
+		assertEquals(3, events.size());
+		assertArrayEquals(bytes("first"), events.get(0).value());
+		assertArrayEquals(bytes("second"), events.get(1).value());
+		assertArrayEquals(bytes("third"), events.get(2).value());
+	}
+
+	@Test
+	void releasedSlotsDoNotHoldBackTheOnesBehindThem() throws Exception {
+		var sent = spoolWriter.reserve();
+		var failed = spoolWriter.reserve();
+
+		spoolWriter.release(sent);
+		spoolWriter.fill(failed, 7, bytes("spooled")).get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, localSpool.backlog());
+		assertEquals(7, localSpool.peek(1).events().get(0).key());
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}